@@ -1,5 +1,9 @@
 package prr.app;
 
+import java.io.IOException;
+
+import prr.ImportMode;
+import prr.MessageStorage;
 import prr.NetworkManager;
 import prr.exceptions.ImportFileException;
 import pt.tecnico.uilib.Dialog;
@@ -12,11 +16,27 @@ public class App {
 	public static void main(String[] args) {
 		try (var ui = Dialog.UI) {
 			var receiver = new NetworkManager();
+			receiver.setJournaling(Boolean.getBoolean("journal"));
+			try {
+				receiver.setMessageStorage(MessageStorage.valueOf(
+					System.getProperty("messageStorage", "heap").toUpperCase()));
+			} catch (IOException e) {
+				// no behavior described: just present the problem
+				e.printStackTrace();
+			}
+			long checkpointInterval = Long.getLong("checkpointInterval", 0);
+			int checkpointChanges = Integer.getInteger("checkpointChanges", 0);
+			if (checkpointInterval > 0 || checkpointChanges > 0) {
+				receiver.startCheckpointing(checkpointInterval * 1000,
+					checkpointChanges, Integer.getInteger("checkpointBackups", 2));
+			}
 
 			String datafile = System.getProperty("import");
 			if (datafile != null) {
+				ImportMode mode = ImportMode.valueOf(
+					System.getProperty("importMode", "sequential").toUpperCase());
 				try {
-					receiver.importFile(datafile);
+					receiver.importFile(datafile, mode);
 				} catch (ImportFileException e) {
 					// no behavior described: just present the problem
 					e.printStackTrace();
@@ -24,6 +44,7 @@ public class App {
 			}
 
 			(new prr.app.main.Menu(receiver)).open();
+			receiver.stopCheckpointing();
 		}
 	}
 
@@ -1,7 +1,9 @@
 package prr.app.clients;
 
 import prr.Network;
+import prr.Page;
 import prr.app.util.ToStringer;
+import prr.clients.Client;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -10,6 +12,9 @@ import pt.tecnico.uilib.menus.CommandException;
  */
 class DoShowAllClients extends Command<Network> {
 
+    /** Number of clients fetched and shown at a time. */
+    private static final int PAGE_SIZE = 100;
+
     DoShowAllClients(Network receiver) {
         super(Label.SHOW_ALL_CLIENTS, receiver);
     }
@@ -17,10 +22,15 @@ class DoShowAllClients extends Command<Network> {
     @Override
     protected final void execute() throws CommandException {
         ToStringer toStringer = new ToStringer();
-        _receiver.getAllClients()
-                .stream()
-                .map(o -> o.accept(toStringer))
-                .forEach(_display::popup);
+        String after = null;
+        do {
+            Page<Client> page = _receiver.getClientsPage(after, PAGE_SIZE);
+            page.getItems()
+                    .stream()
+                    .map(o -> o.accept(toStringer))
+                    .forEach(_display::popup);
+            after = page.getNext();
+        } while (after != null);
     }
 
 }
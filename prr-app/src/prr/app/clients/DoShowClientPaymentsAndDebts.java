@@ -2,6 +2,7 @@ package prr.app.clients;
 
 import prr.Network;
 import prr.app.exceptions.UnknownClientKeyException;
+import prr.util.Money;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -20,9 +21,9 @@ class DoShowClientPaymentsAndDebts extends Command<Network> {
         String clientId = stringField("clientId");
         try {
             long clientPayments =
-                Math.round(_receiver.getClientPayments(clientId));
+                Money.round(_receiver.getClientPayments(clientId));
             long clientDebts =
-                Math.round(_receiver.getClientDebts(clientId));
+                Money.round(_receiver.getClientDebts(clientId));
             _display.popup(
                 Message.clientPaymentsAndDebts(
                     clientId, clientPayments, clientDebts
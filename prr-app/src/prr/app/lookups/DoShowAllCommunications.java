@@ -1,7 +1,9 @@
 package prr.app.lookups;
 
 import prr.Network;
+import prr.Page;
 import prr.app.util.ToStringer;
+import prr.communications.Communication;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -10,6 +12,9 @@ import pt.tecnico.uilib.menus.CommandException;
  */
 class DoShowAllCommunications extends Command<Network> {
 
+    /** Number of communications fetched and shown at a time. */
+    private static final int PAGE_SIZE = 100;
+
     DoShowAllCommunications(Network receiver) {
         super(Label.SHOW_ALL_COMMUNICATIONS, receiver);
     }
@@ -17,10 +22,16 @@ class DoShowAllCommunications extends Command<Network> {
     @Override
     protected final void execute() throws CommandException {
         ToStringer toStringer = new ToStringer();
-        _receiver.getAllCommunications()
-                .stream()
-                .map(o -> o.accept(toStringer))
-                .forEach(_display::popup);
+        String after = null;
+        do {
+            Page<Communication> page =
+                    _receiver.getCommunicationsPage(after, PAGE_SIZE);
+            page.getItems()
+                    .stream()
+                    .map(o -> o.accept(toStringer))
+                    .forEach(_display::popup);
+            after = page.getNext();
+        } while (after != null);
     }
 
 }
@@ -2,7 +2,6 @@ package prr.app.lookups;
 
 import prr.Network;
 import prr.app.util.ToStringer;
-import prr.app.util.Comparinator;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -20,7 +19,6 @@ class DoShowClientsWithDebts extends Command<Network> {
         ToStringer toStringer = new ToStringer();
         _receiver.getClientsWithDebts()
                 .stream()
-                .sorted(Comparinator.CLIENT_DEBT_COMPARATOR)
                 .map(o -> o.accept(toStringer))
                 .forEach(_display::popup);
     }
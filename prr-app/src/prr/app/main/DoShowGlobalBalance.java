@@ -1,25 +1,39 @@
 package prr.app.main;
 
 import prr.Network;
+import prr.util.Money;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 
 /**
- * Show global balance.
+ * Show global balance. When the {@code checkBalance} system property is set,
+ * the running totals are also checked against the balance of every client.
  */
 class DoShowGlobalBalance extends Command<Network> {
 
+    private final boolean _checkBalance;
+
     DoShowGlobalBalance(Network receiver) {
         super(Label.SHOW_GLOBAL_BALANCE, receiver);
+        _checkBalance = Boolean.getBoolean("checkBalance");
     }
 
     @Override
     protected final void execute() throws CommandException {
-        long globalPayments = Math.round(_receiver.getGlobalPayments());
-        long globalDebts = Math.round(_receiver.getGlobalDebts());
+        long globalPayments = Money.round(_receiver.getGlobalPayments());
+        long globalDebts = Money.round(_receiver.getGlobalDebts());
         _display.popup(
             Message.globalPaymentsAndDebts(globalPayments, globalDebts)
         );
+        if (_checkBalance) {
+            long paymentsDrift = _receiver.getGlobalPaymentsDrift();
+            long debtsDrift = _receiver.getGlobalDebtsDrift();
+            if (paymentsDrift != 0L || debtsDrift != 0L) {
+                _display.popup(
+                    Message.globalBalanceDrift(paymentsDrift, debtsDrift)
+                );
+            }
+        }
     }
 
 }
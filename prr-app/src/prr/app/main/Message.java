@@ -28,4 +28,15 @@ interface Message {
         static String globalPaymentsAndDebts(long payments, long debts) {
                 return "Valores globais: " + payments + " (pagamentos),  " + debts + " (dívidas).";
         }
+
+        /**
+         * @param paymentsDrift how far the running total of the payments is
+         *                      from the payments of every client, in cents
+         * @param debtsDrift    how far the running total of the debts is from
+         *                      the debts of every client, in cents
+         * @return string presenting the drift of the global values
+         */
+        static String globalBalanceDrift(long paymentsDrift, long debtsDrift) {
+                return "Desvio dos valores globais (cêntimos): " + paymentsDrift + " (pagamentos),  " + debtsDrift + " (dívidas).";
+        }
 }
@@ -2,6 +2,7 @@ package prr.app.terminal;
 
 import prr.Network;
 import prr.terminals.Terminal;
+import prr.util.Money;
 import pt.tecnico.uilib.forms.Form;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -17,9 +18,9 @@ class DoEndInteractiveCommunication extends TerminalCommand {
     @Override
     protected final void execute() throws CommandException {
         int duration = Form.requestInteger(Prompt.duration());
-        double commPrice =
+        long commPrice =
             _receiver.endOngoingCommunication(duration, _network);
-        _display.popup(Message.communicationCost(Math.round(commPrice)));
+        _display.popup(Message.communicationCost(Money.round(commPrice)));
     }
 
 }
@@ -2,6 +2,7 @@ package prr.app.terminal;
 
 import prr.Network;
 import prr.terminals.Terminal;
+import prr.util.Money;
 import pt.tecnico.uilib.menus.CommandException;
 
 /**
@@ -16,8 +17,8 @@ class DoShowTerminalBalance extends TerminalCommand {
     @Override
     protected final void execute() throws CommandException {
         String terminalId = _receiver.getTerminalId();
-        long terminalPayments = Math.round(_receiver.getPayments());
-        long terminalDebts = Math.round(_receiver.getDebts());
+        long terminalPayments = Money.round(_receiver.getPayments());
+        long terminalDebts = Money.round(_receiver.getDebts());
         _display.popup(
             Message.terminalPaymentsAndDebts(
                 terminalId, terminalPayments, terminalDebts
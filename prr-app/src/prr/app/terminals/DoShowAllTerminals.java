@@ -1,7 +1,9 @@
 package prr.app.terminals;
 
 import prr.Network;
+import prr.Page;
 import prr.app.util.ToStringer;
+import prr.terminals.Terminal;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -10,6 +12,9 @@ import pt.tecnico.uilib.menus.CommandException;
  */
 class DoShowAllTerminals extends Command<Network> {
 
+    /** Number of terminals fetched and shown at a time. */
+    private static final int PAGE_SIZE = 100;
+
     DoShowAllTerminals(Network receiver) {
         super(Label.SHOW_ALL_TERMINALS, receiver);
     }
@@ -17,10 +22,15 @@ class DoShowAllTerminals extends Command<Network> {
     @Override
     protected final void execute() throws CommandException {
         ToStringer toStringer = new ToStringer();
-        _receiver.getAllTerminals()
-                .stream()
-                .map(o -> o.accept(toStringer))
-                .forEach(_display::popup);
+        String after = null;
+        do {
+            Page<Terminal> page = _receiver.getTerminalsPage(after, PAGE_SIZE);
+            page.getItems()
+                    .stream()
+                    .map(o -> o.accept(toStringer))
+                    .forEach(_display::popup);
+            after = page.getNext();
+        } while (after != null);
     }
 
 }
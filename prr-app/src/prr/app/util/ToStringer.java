@@ -1,5 +1,6 @@
 package prr.app.util;
 
+import prr.util.Money;
 import prr.util.Visitor;
 import prr.clients.Client;
 import prr.communications.Communication;
@@ -14,8 +15,8 @@ public class ToStringer extends Visitor {
                 client.getTaxId() + "|" + client.getLevelType() + "|" +
                 (client.hasNotificationsEnabled() ? "YES" : "NO") + "|" +
                 client.getNumberOfTerminals() + "|" +
-                Math.round(client.getPayments()) + "|" +
-                Math.round(client.getDebts());
+                Money.round(client.getPayments()) + "|" +
+                Money.round(client.getDebts());
     }
 
     @Override
@@ -25,7 +26,7 @@ public class ToStringer extends Visitor {
                 communication.getSenderId() + "|" +
                 communication.getReceiverId() + "|" +
                 communication.getUnits() + "|" +
-                Math.round(communication.getPrice()) + "|" +
+                Money.round(communication.getPrice()) + "|" +
                 (communication.isOngoing() ? "ONGOING" : "FINISHED");
     }
 
@@ -41,8 +42,8 @@ public class ToStringer extends Visitor {
                 terminal.getTerminalId() + "|" +
                 terminal.getClientId() + "|" +
                 terminal.getStatusType() + "|" +
-                Math.round(terminal.getPayments()) + "|" +
-                Math.round(terminal.getDebts()) +
+                Money.round(terminal.getPayments()) + "|" +
+                Money.round(terminal.getDebts()) +
                 (terminal.hasFriends() ? "|" + terminal.getFriendsIds() : "");
     }
 
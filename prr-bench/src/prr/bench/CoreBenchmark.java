@@ -0,0 +1,331 @@
+package prr.bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import prr.CommunicationBatch;
+import prr.ImportMode;
+import prr.Network;
+import prr.NetworkManager;
+import prr.communications.Communication;
+import prr.exceptions.InvalidCommunicationException;
+import prr.tariffs.BasePlan;
+import prr.tariffs.RateTable;
+import prr.terminals.Terminal;
+
+/**
+ * Benchmark for the hot paths of prr-core on a generated network: making,
+ * ending and paying communications, the lookups of the application, and
+ * saving, loading and importing networks.
+ * <p>
+ * Every benchmark is run for some warmup iterations, whose times are thrown
+ * away, and then for the measured iterations, reporting the mean and the best
+ * time per operation. Benchmarks that make communications grow the network,
+ * so they run after the lookups.
+ */
+public class CoreBenchmark {
+
+    /** Default number of communications of the generated network. */
+    private static final int DEFAULT_COMMUNICATIONS = 100_000;
+
+    /** Default number of measured iterations of every benchmark. */
+    private static final int DEFAULT_ITERATIONS = 5;
+
+    /** Number of iterations whose times are thrown away. */
+    private static final int WARMUP_ITERATIONS = 3;
+
+    /** Number of operations of every iteration of the cheap benchmarks. */
+    private static final int OPERATIONS = 10_000;
+
+    /**
+     * Number of threads the concurrent benchmarks go up to, doubling from
+     * one, unless there are more processors.
+     */
+    private static final int MAX_THREADS = 8;
+
+    /** Gathers the results of the operations, so that none is optimized out. */
+    private static long _sink;
+
+    public static void main(String[] args) throws Exception {
+        int communications = args.length > 0 ? Integer.parseInt(args[0]) :
+            DEFAULT_COMMUNICATIONS;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) :
+            Math.max(10, communications / 100);
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) :
+            DEFAULT_ITERATIONS;
+        int terminals = Math.min(2 * clients, NetworkGenerator.MAX_TERMINALS);
+
+        NetworkGenerator generator = new NetworkGenerator(clients, terminals);
+        NetworkManager manager = new NetworkManager();
+        Network network = manager.getNetwork();
+        long start = System.nanoTime();
+        generator.populate(network);
+        generator.communicate(network, communications);
+        System.out.printf("network: %d clients, %d terminals, " +
+            "%d communications (generated in %.3f s)%n", clients, terminals,
+            communications, (System.nanoTime() - start) / 1e9);
+
+        measure("getClient", OPERATIONS, iterations, operations -> {
+            for (int i = 0; i < operations; i++) {
+                _sink += network.getClient(generator.clientKey(
+                    generator.randomClient())).getNumberOfTerminals();
+            }
+        });
+        measure("getTerminal", OPERATIONS, iterations, operations -> {
+            for (int i = 0; i < operations; i++) {
+                _sink += network.getTerminal(generator.terminalKey(
+                    generator.randomTerminal())).hashCode();
+            }
+        });
+        measure("getCommunicationsMadeByClient", OPERATIONS, iterations,
+          operations -> {
+            for (int i = 0; i < operations; i++) {
+                for (Communication communication :
+                  network.getCommunicationsMadeByClient(
+                    generator.clientKey(generator.randomClient()))) {
+                    _sink += communication.getId();
+                }
+            }
+        });
+        measure("getAllCommunications", 1, iterations, operations ->
+            _sink += count(network.getAllCommunications()));
+        measure("getCommunicationsPage (100)", OPERATIONS, iterations,
+          operations -> {
+            for (int i = 0; i < operations; i++) {
+                _sink += network.getCommunicationsPage(Integer.toString(
+                    (int) (i * 7919L % communications)), 100)
+                    .getItems().size();
+            }
+        });
+        measure("getClientsWithDebts", 1, iterations, operations ->
+            _sink += count(network.getClientsWithDebts()));
+        measure("getClientsWithoutDebts", 1, iterations, operations ->
+            _sink += count(network.getClientsWithoutDebts()));
+        measure("getUnusedTerminals", 1, iterations, operations ->
+            _sink += count(network.getUnusedTerminals()));
+        measure("getTerminalsWithPositiveBalance", 1, iterations,
+          operations ->
+            _sink += count(network.getTerminalsWithPositiveBalance()));
+
+        measure("sendSMS", OPERATIONS, iterations, operations -> {
+            for (int i = 0; i < operations; i++) {
+                int sender = generator.randomTerminal();
+                network.getTerminal(generator.terminalKey(sender))
+                    .sendSMS(generator.terminalKey(
+                        (sender + 1) % terminals), network, "benchmark");
+            }
+        });
+        measure("makeVoiceCall/endOngoing", OPERATIONS, iterations,
+          operations -> {
+            for (int i = 0; i < operations; i++) {
+                int sender = generator.randomTerminal();
+                Terminal terminal = network.getTerminal(
+                    generator.terminalKey(sender));
+                terminal.makeVoiceCall(generator.terminalKey(
+                    (sender + 1) % terminals), network);
+                _sink += terminal.endOngoingCommunication(10, network);
+            }
+        });
+        measure("makeVoiceCall (rejected)", OPERATIONS, iterations,
+          operations -> {
+            for (int i = 0; i < operations; i++) {
+                String key = generator.terminalKey(generator.randomTerminal());
+                try {
+                    network.getTerminal(key).makeVoiceCall(key, network);
+                } catch (InvalidCommunicationException e) {
+                    _sink++;
+                }
+            }
+        });
+        measure("tryMakeVoiceCall (rejected)", OPERATIONS, iterations,
+          operations -> {
+            for (int i = 0; i < operations; i++) {
+                String key = generator.terminalKey(generator.randomTerminal());
+                _sink += network.getTerminal(key).tryMakeVoiceCall(key,
+                    network).ordinal();
+            }
+        });
+        CommunicationBatch batch = new CommunicationBatch(OPERATIONS);
+        measure("makeCommunications", OPERATIONS, iterations, operations -> {
+            batch.clear();
+            for (int i = 0; i < operations; i++) {
+                int sender = generator.randomTerminal();
+                String senderKey = generator.terminalKey(sender);
+                String receiverKey =
+                    generator.terminalKey((sender + 1) % terminals);
+                if (i % 2 == 0) {
+                    batch.addTextCommunication(senderKey, receiverKey,
+                        "benchmark");
+                } else {
+                    batch.addVoiceCall(senderKey, receiverKey, 10);
+                }
+            }
+            _sink += network.makeCommunications(batch).length;
+        });
+        List<Communication> rated = new ArrayList<>();
+        for (Communication communication : network.getAllCommunications()) {
+            if (!communication.isOngoing()) {
+                rated.add(communication);
+            }
+        }
+        int[] levels = new int[rated.size()];
+        int[] types = new int[rated.size()];
+        int[] units = new int[rated.size()];
+        boolean[] friends = new boolean[rated.size()];
+        for (int i = 0; i < rated.size(); i++) {
+            Communication communication = rated.get(i);
+            Terminal sender = communication.getTerminalSender();
+            levels[i] = sender.getOwner().getRateLevel();
+            types[i] = communication.getRateType();
+            units[i] = communication.getUnits();
+            friends[i] = sender.isFriend(communication.getTerminalReceiver());
+        }
+        RateTable rates = new BasePlan().getRates();
+        measure("RateTable.price (re-rating)", rated.size(), iterations,
+          operations -> {
+            long total = 0L;
+            for (int i = 0; i < operations; i++) {
+                total += rates.price(levels[i], types[i], units[i],
+                    friends[i]);
+            }
+            _sink += total;
+        });
+        measure("Network.reRate", 1, iterations, operations ->
+            _sink += network.reRate(new BasePlan()).getTotalRevenue()
+                .getDelta());
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(processors, MAX_THREADS);
+          threads *= 2) {
+            measureSendSMS(network, generator, terminals, threads,
+                iterations);
+        }
+        List<Communication> unpaid = new ArrayList<>();
+        for (Communication communication : network.getAllCommunications()) {
+            if (!communication.isPaid() && !communication.isOngoing()) {
+                unpaid.add(communication);
+            }
+        }
+        int[] paid = { 0 };
+        measure("performPayment", Math.min(OPERATIONS,
+          unpaid.size() / (WARMUP_ITERATIONS + iterations)), iterations,
+          operations -> {
+            for (int i = 0; i < operations; i++) {
+                Communication communication = unpaid.get(paid[0]++);
+                communication.getTerminalSender().performPayment(
+                    communication.getId(), network);
+            }
+        });
+
+        File file = File.createTempFile("prr-network", ".dat");
+        file.deleteOnExit();
+        manager.saveAs(file.getPath());
+        measure("NetworkManager.save", 1, iterations, operations -> {
+            manager.getNetwork().changed();
+            manager.save();
+        });
+        System.out.println("snapshot: " + file.length() + " bytes");
+        measure("NetworkManager.load", 1, iterations, operations ->
+            manager.load(file.getPath()));
+
+        File entries = File.createTempFile("prr-import", ".txt");
+        entries.deleteOnExit();
+        ImportBenchmark.generate(entries, communications);
+        measure("Network.importFile", 1, iterations, operations ->
+            new NetworkManager().importFile(entries.getPath(),
+                ImportMode.SEQUENTIAL));
+        System.out.println("(sink " + _sink + ")");
+    }
+
+    /**
+     * Runs the benchmark of {@link Network#sendSMS(String, String, String)}
+     * on some threads at once, each sending its share of the messages between
+     * random terminals, so that its throughput can be compared as threads
+     * are added.
+     *
+     * @param network    The network
+     * @param generator  The generator of the network
+     * @param terminals  Number of terminals of the network
+     * @param threads    Number of threads
+     * @param iterations Number of measured iterations
+     * @throws Exception if an operation fails
+     */
+    private static void measureSendSMS(Network network,
+      NetworkGenerator generator, int terminals, int threads, int iterations)
+      throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            measure("Network.sendSMS (" + threads + " threads)", OPERATIONS,
+              iterations, operations -> {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (int i = 0; i < operations / threads; i++) {
+                            int sender = random.nextInt(terminals);
+                            network.sendSMS(generator.terminalKey(sender),
+                                generator.terminalKey(
+                                    (sender + 1) % terminals), "benchmark");
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static int count(Iterable<?> items) {
+        int count = 0;
+        for (Object item : items) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Runs a benchmark and reports how long its operations took.
+     *
+     * @param name       The name of the benchmark
+     * @param operations Number of operations of every iteration
+     * @param iterations Number of measured iterations
+     * @param benchmark  The benchmark
+     * @throws Exception if an operation fails
+     */
+    private static void measure(String name, int operations, int iterations,
+      Benchmark benchmark) throws Exception {
+        if (operations <= 0) {
+            System.out.printf("%-32s skipped%n", name);
+            return;
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            benchmark.run(operations);
+        }
+        long total = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            benchmark.run(operations);
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            best = Math.min(best, elapsed);
+        }
+        double mean = (double) total / iterations / operations;
+        System.out.printf("%-32s %14.1f ns/op %14.0f ops/s (best %.1f)%n",
+            name, mean, 1e9 / mean, (double) best / operations);
+    }
+
+    @FunctionalInterface
+    private interface Benchmark {
+        void run(int operations) throws Exception;
+    }
+
+}
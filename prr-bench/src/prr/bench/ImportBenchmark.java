@@ -0,0 +1,148 @@
+package prr.bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import prr.ImportMode;
+import prr.NetworkManager;
+import prr.exceptions.ImportFileException;
+import prr.terminals.TerminalKeys;
+import prr.util.EntryTokenizer;
+
+/**
+ * Benchmark for importing plain text provisioning files.
+ */
+public class ImportBenchmark {
+
+    /** Default number of lines of the generated file. */
+    private static final int DEFAULT_LINES = 5_000_000;
+
+    /** Maximum number of terminals, since their keys have 6 digits. */
+    private static final int MAX_TERMINALS = 1_000_000;
+
+    /** Seed of the generator, so that every run imports the same file. */
+    private static final long SEED = 20221107L;
+
+    public static void main(String[] args) throws IOException,
+      ImportFileException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+        File file;
+        if (args.length > 1) {
+            file = new File(args[1]);
+        } else {
+            file = File.createTempFile("prr-import", ".txt");
+            file.deleteOnExit();
+        }
+
+        generate(file, lines);
+        System.out.println("file: " + file + " (" + lines + " lines, " +
+            file.length() + " bytes)");
+
+        report("split (regex)", lines, () -> splitWithRegex(file));
+        report("split (tokenizer)", lines, () -> splitWithTokenizer(file));
+        for (ImportMode mode : ImportMode.values()) {
+            report("import (" + mode.name().toLowerCase() + ")", lines,
+                () -> new NetworkManager().importFile(file.getPath(), mode));
+        }
+    }
+
+    /**
+     * Writes a valid provisioning file. Clients come first, followed by their
+     * terminals and then by the friends of the terminals.
+     *
+     * @param file  The file to write
+     * @param lines The number of lines of the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void generate(File file, int lines) throws IOException {
+        int terminals = Math.min(lines / 5, MAX_TERMINALS);
+        int clients = Math.max(1, (lines - terminals) / 2);
+        int friends = lines - terminals - clients;
+        Random random = new Random(SEED);
+        String[] statuses = { "ON", "OFF", "SILENCE" };
+
+        try (BufferedWriter writer = new BufferedWriter(
+          new FileWriter(file))) {
+            for (int i = 0; i < clients; i++) {
+                writer.write("CLIENT|client" + i + "|Client Name " + i + "|" +
+                    (100000000 + i));
+                writer.newLine();
+            }
+            for (int i = 0; i < terminals; i++) {
+                writer.write((i % 2 == 0 ? "BASIC" : "FANCY") + "|" +
+                    terminalKey(i) + "|client" + random.nextInt(clients) +
+                    "|" + statuses[random.nextInt(statuses.length)]);
+                writer.newLine();
+            }
+            for (int i = 0; i < friends; i++) {
+                writer.write("FRIENDS|" + terminalKey(i % terminals) + "|" +
+                    terminalKey(random.nextInt(terminals)) + "," +
+                    terminalKey(random.nextInt(terminals)) + "," +
+                    terminalKey(random.nextInt(terminals)));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String terminalKey(int index) {
+        return String.format("%06d", index);
+    }
+
+    private static long splitWithRegex(File file) throws IOException {
+        long fields = 0;
+        try (BufferedReader reader = new BufferedReader(
+          new FileReader(file))) {
+            String entry;
+            while ((entry = reader.readLine()) != null) {
+                String[] entryFields = entry.split("\\|");
+                if (entryFields[0].equals("FRIENDS")) {
+                    fields += entryFields[2].split(",").length;
+                } else if (!entryFields[0].equals("CLIENT") &&
+                  entryFields[1].matches("^\\d{6}$")) {
+                    fields++;
+                }
+                fields += entryFields.length;
+            }
+        }
+        return fields;
+    }
+
+    private static long splitWithTokenizer(File file) throws IOException {
+        long fields = 0;
+        EntryTokenizer tokenizer = new EntryTokenizer();
+        try (BufferedReader reader = new BufferedReader(
+          new FileReader(file))) {
+            String entry;
+            while ((entry = reader.readLine()) != null) {
+                fields += tokenizer.tokenize(entry, '|');
+                if (tokenizer.get(0).equals("FRIENDS")) {
+                    fields += tokenizer.tokenize(tokenizer.get(2), ',');
+                } else if (!tokenizer.get(0).equals("CLIENT") &&
+                  TerminalKeys.toNumber(tokenizer.get(1)) >= 0) {
+                    fields++;
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static void report(String name, int lines, Task task)
+      throws IOException, ImportFileException {
+        long start = System.nanoTime();
+        task.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-20s %10.3f s %14.0f lines/s%n", name, seconds,
+            lines / seconds);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws IOException, ImportFileException;
+    }
+
+}
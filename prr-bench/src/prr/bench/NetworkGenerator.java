@@ -0,0 +1,195 @@
+package prr.bench;
+
+import java.util.Random;
+
+import prr.Network;
+import prr.communications.CommunicationOutcome;
+import prr.exceptions.DuplicateClientKeyException;
+import prr.exceptions.DuplicateTerminalKeyException;
+import prr.exceptions.InvalidCommunicationException;
+import prr.exceptions.InvalidFriendException;
+import prr.exceptions.InvalidTerminalKeyException;
+import prr.exceptions.UnknownClientKeyException;
+import prr.exceptions.UnknownEntryTypeException;
+import prr.exceptions.UnknownTerminalKeyException;
+import prr.terminals.Terminal;
+
+/**
+ * Fills networks with synthetic clients, terminals and communications, made
+ * through the same operations as the application, so that benchmarks run on
+ * networks that look like real ones.
+ */
+public class NetworkGenerator {
+
+    /** Maximum number of terminals, since their keys have 6 digits. */
+    public static final int MAX_TERMINALS = 1_000_000;
+
+    /** Seed of the generator, so that every run builds the same network. */
+    private static final long SEED = 20221205L;
+
+    /** Number of clients of the network. */
+    private final int _clients;
+
+    /** Number of terminals of the network, every other one fancy. */
+    private final int _terminals;
+
+    /** Keys of the clients, built once so that looking them up is cheap. */
+    private final String[] _clientKeys;
+
+    /** Keys of the terminals, built once so that looking them up is cheap. */
+    private final String[] _terminalKeys;
+
+    /** Picks the terminals and the kinds of communications. */
+    private final Random _random;
+
+    /**
+     * @param clients   Number of clients of the network
+     * @param terminals Number of terminals of the network
+     */
+    public NetworkGenerator(int clients, int terminals) {
+        if (clients <= 0 || terminals < 2 || terminals > MAX_TERMINALS) {
+            throw new IllegalArgumentException("Cannot generate " + clients +
+                " clients and " + terminals + " terminals");
+        }
+        _clients = clients;
+        _terminals = terminals;
+        _clientKeys = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            _clientKeys[i] = "client" + i;
+        }
+        _terminalKeys = new String[terminals];
+        for (int i = 0; i < terminals; i++) {
+            _terminalKeys[i] = String.format("%06d", i);
+        }
+        _random = new Random(SEED);
+    }
+
+    public int getClients() {
+        return _clients;
+    }
+
+    public int getTerminals() {
+        return _terminals;
+    }
+
+    public String clientKey(int index) {
+        return _clientKeys[index];
+    }
+
+    public String terminalKey(int index) {
+        return _terminalKeys[index];
+    }
+
+    /**
+     * Registers the clients and the terminals, all of them idle, and adds a
+     * few friends to every terminal.
+     *
+     * @param network The network to fill
+     */
+    public void populate(Network network) {
+        try {
+            for (int i = 0; i < _clients; i++) {
+                network.registerClient(clientKey(i), "Client Name " + i,
+                    100000000 + i);
+            }
+            for (int i = 0; i < _terminals; i++) {
+                network.registerTerminal(i % 2 == 0 ? "BASIC" : "FANCY",
+                    terminalKey(i), clientKey(i % _clients));
+            }
+            for (int i = 0; i < _terminals; i++) {
+                Terminal terminal = network.getTerminal(terminalKey(i));
+                for (int j = 0; j < 3; j++) {
+                    addFriend(network, terminal, randomTerminal());
+                }
+            }
+        } catch (DuplicateClientKeyException | UnknownClientKeyException |
+          InvalidTerminalKeyException | DuplicateTerminalKeyException |
+          UnknownEntryTypeException | UnknownTerminalKeyException e) {
+            // the keys are generated unique and valid
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void addFriend(Network network, Terminal terminal,
+      int friend) throws UnknownTerminalKeyException {
+        try {
+            terminal.addFriend(terminalKey(friend), network);
+        } catch (InvalidFriendException e) {
+            // a terminal can't be its own friend, which is fine
+        }
+    }
+
+    /**
+     * Makes communications between random terminals: mostly text messages,
+     * and voice and video calls that are ended right away. Every fourth
+     * communication is paid.
+     *
+     * @param network        The populated network
+     * @param communications Number of communications to make
+     */
+    public void communicate(Network network, int communications) {
+        // every communication is made, so their keys follow the existing ones
+        int nextId = network.getAllCommunications().size() + 1;
+        for (int i = 0; i < communications; i++, nextId++) {
+            int sender = randomTerminal();
+            int receiver = randomTerminal();
+            if (receiver == sender) {
+                receiver = (receiver + 1) % _terminals;
+            }
+            try {
+                Terminal terminal = network.getTerminal(terminalKey(sender));
+                String receiverKey = terminalKey(receiver);
+                int kind = _random.nextInt(10);
+                CommunicationOutcome outcome;
+                if (kind < 6) {
+                    outcome = terminal.trySendSMS(receiverKey, network,
+                        "message " + i);
+                } else {
+                    if (kind < 9 || sender % 2 == 0 || receiver % 2 == 0) {
+                        outcome = terminal.tryMakeVoiceCall(receiverKey,
+                            network);
+                    } else {
+                        outcome = terminal.tryMakeVideoCall(receiverKey,
+                            network);
+                    }
+                    terminal.endOngoingCommunication(1 + _random.nextInt(60),
+                        network);
+                }
+                if (outcome != CommunicationOutcome.MADE) {
+                    // every terminal is idle and calls end right away
+                    throw new IllegalStateException(outcome.name());
+                }
+                if (i % 4 == 0) {
+                    terminal.performPayment(nextId, network);
+                }
+            } catch (UnknownTerminalKeyException |
+              InvalidCommunicationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Builds a network with the given number of communications.
+     *
+     * @param communications Number of communications to make
+     * @return The generated network
+     */
+    public Network generate(int communications) {
+        Network network = new Network();
+        populate(network);
+        communicate(network, communications);
+        return network;
+    }
+
+    /** @return The index of a random terminal */
+    public int randomTerminal() {
+        return _random.nextInt(_terminals);
+    }
+
+    /** @return The index of a random client */
+    public int randomClient() {
+        return _random.nextInt(_clients);
+    }
+
+}
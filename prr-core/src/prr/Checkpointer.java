@@ -0,0 +1,103 @@
+package prr;
+
+import java.io.IOException;
+
+/**
+ * Background thread that asks a network manager to take a checkpoint of its
+ * current file on a schedule, or once a number of operations has been saved
+ * to its journal since the last checkpoint.
+ */
+class Checkpointer implements Runnable {
+
+    /** The manager whose file gets checkpointed. */
+    private final NetworkManager _manager;
+
+    /** Milliseconds between checkpoints, or 0 for no schedule. */
+    private final long _interval;
+
+    /** The thread taking the checkpoints. */
+    private final Thread _thread;
+
+    /** Was a checkpoint asked for before its time? */
+    private boolean _due;
+
+    /** Was the thread asked to stop? */
+    private boolean _stopped;
+
+    /**
+     * @param manager  The manager whose file gets checkpointed
+     * @param interval Milliseconds between checkpoints, or 0 for no schedule
+     */
+    Checkpointer(NetworkManager manager, long interval) {
+        _manager = manager;
+        _interval = interval;
+        _thread = new Thread(this, "checkpointer");
+        _thread.setDaemon(true);
+        _due = false;
+        _stopped = false;
+    }
+
+    /** Starts taking checkpoints. */
+    void start() {
+        _thread.start();
+    }
+
+    /**
+     * Asks for a checkpoint as soon as possible, without waiting for it.
+     */
+    synchronized void checkpointSoon() {
+        _due = true;
+        notifyAll();
+    }
+
+    /**
+     * Stops taking checkpoints, waiting for the one being taken, if any.
+     */
+    void stop() {
+        synchronized (this) {
+            _stopped = true;
+            notifyAll();
+        }
+        try {
+            _thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long next = System.currentTimeMillis() + _interval;
+        while (awaitCheckpoint(next)) {
+            try {
+                _manager.checkpoint();
+            } catch (IOException e) {
+                // the network is still saved up to its journal, so just try
+                // again on the next checkpoint
+                e.printStackTrace();
+            }
+            next = System.currentTimeMillis() + _interval;
+        }
+    }
+
+    /**
+     * Waits until a checkpoint is due or the thread is asked to stop.
+     *
+     * @param next When the next scheduled checkpoint is due
+     * @return true if a checkpoint is due, false if the thread must stop
+     */
+    private synchronized boolean awaitCheckpoint(long next) {
+        try {
+            long now = System.currentTimeMillis();
+            while (!_due && !_stopped && (_interval == 0 || now < next)) {
+                wait(_interval == 0 ? 0 : next - now);
+                now = System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            return false;
+        }
+        _due = false;
+        return !_stopped;
+    }
+
+}
@@ -0,0 +1,153 @@
+package prr;
+
+import java.util.Arrays;
+
+/**
+ * A batch of communications to be made on a network in one pass by
+ * {@link Network#makeCommunications(CommunicationBatch)}, such as the call
+ * records of a switch. Calls are ended as soon as they are made, after their
+ * duration. Every communication of the batch gets its
+ * {@link prr.communications.CommunicationOutcome} instead of an exception,
+ * so that failed communications cost as little as made ones.
+ * <p>
+ * The communications are kept column by column, so that a batch can be
+ * cleared and filled again without allocating.
+ */
+public class CommunicationBatch {
+
+    /** A text communication. */
+    public static final byte TEXT = 0;
+
+    /** A voice call. */
+    public static final byte VOICE = 1;
+
+    /** A video call. */
+    public static final byte VIDEO = 2;
+
+    /** Default number of communications a batch holds before growing. */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /** The types of the communications. */
+    private byte[] _types;
+
+    /** The keys of the sending terminals. */
+    private String[] _senderIds;
+
+    /** The keys of the receiving terminals. */
+    private String[] _receiverIds;
+
+    /** The messages of the text communications. */
+    private String[] _messages;
+
+    /** The durations of the calls. */
+    private int[] _durations;
+
+    /** Number of communications of the batch. */
+    private int _size;
+
+    /** Default constructor. */
+    public CommunicationBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Number of communications the batch holds before growing
+     */
+    public CommunicationBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        _types = new byte[capacity];
+        _senderIds = new String[capacity];
+        _receiverIds = new String[capacity];
+        _messages = new String[capacity];
+        _durations = new int[capacity];
+        _size = 0;
+    }
+
+    /**
+     * Adds a text communication to the batch.
+     *
+     * @param senderId   The key of the sending terminal
+     * @param receiverId The key of the receiving terminal
+     * @param message    The message
+     */
+    public void addTextCommunication(String senderId, String receiverId,
+      String message) {
+        add(TEXT, senderId, receiverId, message, 0);
+    }
+
+    /**
+     * Adds a voice call, ended after the given duration, to the batch.
+     *
+     * @param senderId   The key of the calling terminal
+     * @param receiverId The key of the called terminal
+     * @param duration   The duration of the call
+     */
+    public void addVoiceCall(String senderId, String receiverId,
+      int duration) {
+        add(VOICE, senderId, receiverId, null, duration);
+    }
+
+    /**
+     * Adds a video call, ended after the given duration, to the batch.
+     *
+     * @param senderId   The key of the calling terminal
+     * @param receiverId The key of the called terminal
+     * @param duration   The duration of the call
+     */
+    public void addVideoCall(String senderId, String receiverId,
+      int duration) {
+        add(VIDEO, senderId, receiverId, null, duration);
+    }
+
+    private void add(byte type, String senderId, String receiverId,
+      String message, int duration) {
+        if (_size == _types.length) {
+            int capacity = _size * 2;
+            _types = Arrays.copyOf(_types, capacity);
+            _senderIds = Arrays.copyOf(_senderIds, capacity);
+            _receiverIds = Arrays.copyOf(_receiverIds, capacity);
+            _messages = Arrays.copyOf(_messages, capacity);
+            _durations = Arrays.copyOf(_durations, capacity);
+        }
+        _types[_size] = type;
+        _senderIds[_size] = senderId;
+        _receiverIds[_size] = receiverId;
+        _messages[_size] = message;
+        _durations[_size] = duration;
+        _size++;
+    }
+
+    /** @return The number of communications of the batch */
+    public int size() {
+        return _size;
+    }
+
+    /** Removes every communication from the batch, keeping its capacity. */
+    public void clear() {
+        Arrays.fill(_senderIds, 0, _size, null);
+        Arrays.fill(_receiverIds, 0, _size, null);
+        Arrays.fill(_messages, 0, _size, null);
+        _size = 0;
+    }
+
+    byte getType(int index) {
+        return _types[index];
+    }
+
+    String getSenderId(int index) {
+        return _senderIds[index];
+    }
+
+    String getReceiverId(int index) {
+        return _receiverIds[index];
+    }
+
+    String getMessage(int index) {
+        return _messages[index];
+    }
+
+    int getDuration(int index) {
+        return _durations[index];
+    }
+
+}
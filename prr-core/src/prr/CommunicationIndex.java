@@ -0,0 +1,59 @@
+package prr;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indexes the ids of communications by the key of a terminal, keeping the
+ * ids of every terminal sorted in an array of their own.
+ */
+class CommunicationIndex {
+
+    /** Number of ids a terminal holds the first time its ids grow. */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** The ids of a terminal, sorted, followed by unused slots. */
+    private static class Ids {
+        private int[] _ids = new int[INITIAL_CAPACITY];
+        private int _size = 0;
+    }
+
+    private final Map<String, Ids> _ids = new HashMap<String, Ids>();
+
+    /**
+     * Adds the id of a communication to those of a terminal, keeping them
+     * sorted. Communications are mostly registered in increasing order of
+     * their ids, so they are almost always appended; only those overtaken
+     * by a communication made at the same time move back.
+     *
+     * @param key The key of the terminal
+     * @param id  The id of the communication
+     */
+    void add(String key, int id) {
+        Ids ids = _ids.computeIfAbsent(key, k -> new Ids());
+        if (ids._size == ids._ids.length) {
+            ids._ids = Arrays.copyOf(ids._ids, ids._size * 2);
+        }
+        int position = ids._size;
+        while (position > 0 && ids._ids[position - 1] > id) {
+            position--;
+        }
+        System.arraycopy(ids._ids, position, ids._ids, position + 1,
+            ids._size - position);
+        ids._ids[position] = id;
+        ids._size++;
+    }
+
+    /**
+     * Gets the ids of the communications of a terminal.
+     *
+     * @param key The key of the terminal
+     * @return A copy of the ids, sorted, or an empty array if there are none
+     */
+    int[] get(String key) {
+        Ids ids = _ids.get(key);
+        return ids == null ? new int[0] : Arrays.copyOf(ids._ids, ids._size);
+    }
+
+}
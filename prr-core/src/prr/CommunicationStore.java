@@ -0,0 +1,497 @@
+package prr;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import prr.communications.Communication;
+import prr.communications.TextCommunication;
+import prr.communications.VideoCommunication;
+import prr.communications.VoiceCommunication;
+import prr.tariffs.RateTable;
+import prr.terminals.Terminal;
+
+/**
+ * The communications made by the terminals of a shard of a network (see
+ * {@link NetworkShard}), kept column by column instead of as objects. A
+ * finished communication never changes again but for being paid, so it is
+ * reduced to the numbers of its terminals (see
+ * {@link prr.terminals.TerminalKeys}), its type, units, price and message,
+ * and a bit telling whether it was paid. The messages are kept by a
+ * {@link MessageStore}, on the heap unless told otherwise.
+ * <p>
+ * Every communication is a row, and the rows are sorted by the id of their
+ * communications, so finding a communication is a binary search and
+ * scanning them is walking the arrays in order. The network hands ids out
+ * in sequence, so rows are almost always appended; only those overtaken by
+ * a communication made at the same time move up. An ongoing communication
+ * gets its row when it starts, marked as ongoing, and the row is filled in
+ * when it finishes, so that finishing it moves no row.
+ * <p>
+ * Communications are turned back into objects only when they are asked for.
+ */
+class CommunicationStore implements Serializable {
+
+    /** Serial number for serialization. */
+    @Serial
+    private static final long serialVersionUID = 202212150027L;
+
+    /** Number of rows the store holds before growing for the first time. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Type of the rows of ongoing communications, which were the empty slots
+     * of stores indexed by id.
+     */
+    private static final byte ONGOING = 0;
+
+    /**
+     * The ids of the communications, sorted, or null in stores indexed by id,
+     * which networks saved before every shard had a store of its own hold.
+     */
+    private int[] _ids;
+
+    /**
+     * The types of the communications, as in {@link RateTable} plus one, or
+     * {@link #ONGOING}.
+     */
+    private byte[] _types;
+
+    /** The numbers of the sending terminals. */
+    private int[] _senders;
+
+    /** The numbers of the receiving terminals. */
+    private int[] _receivers;
+
+    /** The units of the communications. */
+    private int[] _units;
+
+    /** The prices of the communications, in cents. */
+    private long[] _prices;
+
+    /**
+     * The keys of the messages of the text communications in the store of
+     * messages, which stay the same as their rows move.
+     */
+    private int[] _messageKeys;
+
+    /** The messages of the text communications. */
+    private MessageStore _messages;
+
+    /** Number of messages kept so far, which is the key of the next one. */
+    private int _messageCount;
+
+    /** The paid communications, one bit per row. */
+    private long[] _paid;
+
+    /** Number of rows of the store. */
+    private int _size;
+
+    CommunicationStore() {
+        _ids = new int[INITIAL_CAPACITY];
+        _types = new byte[INITIAL_CAPACITY];
+        _senders = new int[INITIAL_CAPACITY];
+        _receivers = new int[INITIAL_CAPACITY];
+        _units = new int[INITIAL_CAPACITY];
+        _prices = new long[INITIAL_CAPACITY];
+        _messageKeys = new int[INITIAL_CAPACITY];
+        _messages = new HeapMessageStore();
+        _messageCount = 0;
+        _paid = new long[INITIAL_CAPACITY >> 6];
+        _size = 0;
+    }
+
+    /**
+     * Copies a store, sharing its messages, so that the communications it
+     * holds can be read while the original changes.
+     *
+     * @param store The store to copy
+     */
+    private CommunicationStore(CommunicationStore store) {
+        _size = store._size;
+        _ids = Arrays.copyOf(store._ids, _size);
+        _types = Arrays.copyOf(store._types, _size);
+        _senders = Arrays.copyOf(store._senders, _size);
+        _receivers = Arrays.copyOf(store._receivers, _size);
+        _units = Arrays.copyOf(store._units, _size);
+        _prices = Arrays.copyOf(store._prices, _size);
+        _messageKeys = Arrays.copyOf(store._messageKeys, _size);
+        _messages = store._messages;
+        _messageCount = store._messageCount;
+        _paid = Arrays.copyOf(store._paid, (_size + 63) >> 6);
+    }
+
+    /** @return A copy of the store that shares its messages */
+    CommunicationStore view() {
+        return new CommunicationStore(this);
+    }
+
+    /**
+     * Adds a communication to the store, or fills in its row if it is there
+     * already, as the row of an ongoing communication that just finished.
+     *
+     * @param communication The communication
+     * @return The row of the communication
+     */
+    int add(Communication communication) {
+        int row = insert(communication.getId());
+        _types[row] = communication.isOngoing() ? ONGOING :
+            (byte) (communication.getRateType() + 1);
+        _senders[row] = communication.getTerminalSender().getNumber();
+        _receivers[row] = communication.getTerminalReceiver().getNumber();
+        _units[row] = communication.getUnits();
+        _prices[row] = communication.getPrice();
+        if (communication instanceof TextCommunication) {
+            putMessage(row,
+                ((TextCommunication) communication).getMessage());
+        }
+        setPaid(row, communication.isPaid());
+        return row;
+    }
+
+    /**
+     * Adds the communication of a row of another store to the store.
+     *
+     * @param store The other store
+     * @param row   The row
+     * @return The row of the communication in the store
+     */
+    int add(CommunicationStore store, int row) {
+        int to = insert(store._ids[row]);
+        _types[to] = store._types[row];
+        _senders[to] = store._senders[row];
+        _receivers[to] = store._receivers[row];
+        _units[to] = store._units[row];
+        _prices[to] = store._prices[row];
+        if (store.getRateType(row) == RateTable.TEXT) {
+            putMessage(to, store.getMessage(row));
+        }
+        setPaid(to, store.isPaid(row));
+        return to;
+    }
+
+    /**
+     * Finds the row of a communication, making room for it in order if it is
+     * not in the store.
+     *
+     * @param id The id of the communication
+     * @return The row
+     */
+    private int insert(int id) {
+        int row = _size;
+        if (row > 0 && _ids[row - 1] >= id) {
+            row = Arrays.binarySearch(_ids, 0, _size, id);
+            if (row >= 0) {
+                return row;
+            }
+            row = -row - 1;
+        }
+        if (_size == _ids.length) {
+            grow();
+        }
+        for (int moved = _size; moved > row; moved--) {
+            setPaid(moved, isPaid(moved - 1));
+        }
+        System.arraycopy(_ids, row, _ids, row + 1, _size - row);
+        System.arraycopy(_types, row, _types, row + 1, _size - row);
+        System.arraycopy(_senders, row, _senders, row + 1, _size - row);
+        System.arraycopy(_receivers, row, _receivers, row + 1, _size - row);
+        System.arraycopy(_units, row, _units, row + 1, _size - row);
+        System.arraycopy(_prices, row, _prices, row + 1, _size - row);
+        System.arraycopy(_messageKeys, row, _messageKeys, row + 1,
+            _size - row);
+        _ids[row] = id;
+        _size++;
+        return row;
+    }
+
+    private void grow() {
+        int capacity = Math.max(_ids.length * 2, INITIAL_CAPACITY);
+        _ids = Arrays.copyOf(_ids, capacity);
+        _types = Arrays.copyOf(_types, capacity);
+        _senders = Arrays.copyOf(_senders, capacity);
+        _receivers = Arrays.copyOf(_receivers, capacity);
+        _units = Arrays.copyOf(_units, capacity);
+        _prices = Arrays.copyOf(_prices, capacity);
+        _messageKeys = Arrays.copyOf(_messageKeys, capacity);
+        _paid = Arrays.copyOf(_paid, capacity >> 6);
+    }
+
+    private void putMessage(int row, String message) {
+        _messageKeys[row] = _messageCount++;
+        _messages.put(_messageKeys[row], message);
+    }
+
+    /** @return The number of rows of the store */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Moves the messages of the store into another store of messages, which
+     * keeps them from then on.
+     *
+     * @param messages The new store of messages
+     */
+    void moveMessages(MessageStore messages) {
+        for (int row = 0; row < _size; row++) {
+            if (_types[row] == RateTable.TEXT + 1) {
+                messages.put(_messageKeys[row],
+                    _messages.get(_messageKeys[row]));
+            }
+        }
+        _messages = messages;
+    }
+
+    /**
+     * Finds the row of a communication.
+     *
+     * @param id   The id of the communication
+     * @param hint The row the communication is likely at
+     * @return The row, or -1 if the communication is not in the store
+     */
+    int find(int id, int hint) {
+        if (hint < _size && _ids[hint] == id) {
+            return hint;
+        }
+        int row = Arrays.binarySearch(_ids, 0, _size, id);
+        return row >= 0 ? row : -1;
+    }
+
+    /** @return The id of the communication of a row */
+    int getId(int row) {
+        return _ids[row];
+    }
+
+    /** @return true if the communication of a row is ongoing */
+    boolean isOngoing(int row) {
+        return _types[row] == ONGOING;
+    }
+
+    /** @return The type of a communication, as in {@link RateTable} */
+    int getRateType(int row) {
+        return _types[row] - 1;
+    }
+
+    /** @return The number of the terminal that made a communication */
+    int getSender(int row) {
+        return _senders[row];
+    }
+
+    /** @return The number of the terminal that received a communication */
+    int getReceiver(int row) {
+        return _receivers[row];
+    }
+
+    /** @return The units of a communication */
+    int getUnits(int row) {
+        return _units[row];
+    }
+
+    /** @return The price of a communication, in cents */
+    long getPrice(int row) {
+        return _prices[row];
+    }
+
+    /** @return The message of a text communication */
+    String getMessage(int row) {
+        return _messages.get(_messageKeys[row]);
+    }
+
+    /** @return true if a communication was paid, false otherwise */
+    boolean isPaid(int row) {
+        return (_paid[row >> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Marks a communication as paid.
+     *
+     * @param row The row of the communication
+     */
+    void setPaid(int row) {
+        setPaid(row, true);
+    }
+
+    private void setPaid(int row, boolean paid) {
+        if (paid) {
+            _paid[row >> 6] |= 1L << row;
+        } else {
+            _paid[row >> 6] &= ~(1L << row);
+        }
+    }
+
+    /**
+     * Turns a finished communication of the store back into an object. Every
+     * call makes a new object, which doesn't change the store.
+     *
+     * @param row       The row of the communication
+     * @param terminals The terminals of the network
+     * @return The communication
+     */
+    Communication get(int row, TerminalTable terminals) {
+        int id = _ids[row];
+        Terminal sender = terminals.get(_senders[row]);
+        Terminal receiver = terminals.get(_receivers[row]);
+        MessageStore messages = _messages;
+        int key = _messageKeys[row];
+        return switch (getRateType(row)) {
+            case RateTable.TEXT -> messages.isLazy() ?
+                TextCommunication.restore(_units[row], () -> messages.get(key),
+                    id, receiver, sender, _prices[row], isPaid(row)) :
+                TextCommunication.restore(messages.get(key), _units[row], id,
+                    receiver, sender, _prices[row], isPaid(row));
+            case RateTable.VOICE -> VoiceCommunication.restore(id, receiver,
+                sender, false, _units[row], _prices[row], isPaid(row));
+            default -> VideoCommunication.restore(id, receiver, sender, false,
+                _units[row], _prices[row], isPaid(row));
+        };
+    }
+
+    /**
+     * Walks the rows of the stores of the shards of a network together, in
+     * the order of their ids. Ids are handed out in sequence, so the ids
+     * between the lowest and the highest of the stores are walked in order,
+     * and the store of every id is told by the directory of the network.
+     */
+    static class Merge {
+
+        /** The stores, by the index of their shard. */
+        private final CommunicationStore[] _stores;
+
+        private final ShardDirectory _directory;
+
+        /** The next row of every store. */
+        private final int[] _rows;
+
+        /** The next id to look at. */
+        private int _id;
+
+        /** The id after the highest of the stores. */
+        private final int _end;
+
+        private int _shard;
+        private int _row;
+
+        /**
+         * @param stores    The stores, by the index of their shard
+         * @param directory Tells the shard of every id
+         */
+        Merge(CommunicationStore[] stores, ShardDirectory directory) {
+            _stores = stores;
+            _directory = directory;
+            _rows = new int[stores.length];
+            int id = Integer.MAX_VALUE;
+            int end = 0;
+            for (CommunicationStore store : stores) {
+                if (store._size > 0) {
+                    id = Math.min(id, store._ids[0]);
+                    end = Math.max(end, store._ids[store._size - 1] + 1);
+                }
+            }
+            _id = id;
+            _end = end;
+        }
+
+        /**
+         * Moves on to the row with the next lowest id.
+         *
+         * @return true if there was a row left, false otherwise
+         */
+        boolean next() {
+            while (_id < _end) {
+                int id = _id++;
+                int entry = _directory.get(id);
+                if (entry >= 0) {
+                    int shard = ShardDirectory.shard(entry);
+                    CommunicationStore store = _stores[shard];
+                    int row = _rows[shard];
+                    if (row < store._size && store._ids[row] == id) {
+                        _shard = shard;
+                        _row = row;
+                        _rows[shard]++;
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /** @return The number of rows of the stores */
+        int size() {
+            int size = 0;
+            for (CommunicationStore store : _stores) {
+                size += store._size;
+            }
+            return size;
+        }
+
+        /**
+         * @param shard The index of a shard
+         * @return The store of the shard
+         */
+        CommunicationStore store(int shard) {
+            return _stores[shard];
+        }
+
+        /** @return The index of the shard of the current row */
+        int shard() {
+            return _shard;
+        }
+
+        /** @return The store of the current row */
+        CommunicationStore store() {
+            return _stores[_shard];
+        }
+
+        /** @return The current row, in its store */
+        int row() {
+            return _row;
+        }
+
+    }
+
+    /**
+     * Restores the store from a serialized stream, turning the columns of
+     * stores indexed by id into rows.
+     *
+     * @param in The stream to read the store from
+     * @throws IOException            if there is an error reading the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *                                cannot be found
+     */
+    @Serial
+    private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (_ids != null) {
+            return;
+        }
+        int capacity = _types.length;
+        MessageStore messages = _messages;
+        _ids = new int[capacity];
+        _messageKeys = new int[capacity];
+        _messages = new HeapMessageStore();
+        _messageCount = 0;
+        int row = 0;
+        for (int id = 0; id < capacity; id++) {
+            if (_types[id] == ONGOING) {
+                continue;
+            }
+            _ids[row] = id;
+            _types[row] = _types[id];
+            _senders[row] = _senders[id];
+            _receivers[row] = _receivers[id];
+            _units[row] = _units[id];
+            _prices[row] = _prices[id];
+            if (_types[row] == RateTable.TEXT + 1) {
+                putMessage(row, messages.get(id));
+            }
+            setPaid(row, (_paid[id >> 6] & (1L << id)) != 0);
+            row++;
+        }
+        _size = row;
+    }
+
+}
@@ -0,0 +1,42 @@
+package prr;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/** Keeps the messages on the heap, as strings indexed by their key. */
+class HeapMessageStore implements MessageStore, Serializable {
+
+    /** Serial number for serialization. */
+    @Serial
+    private static final long serialVersionUID = 202212170012L;
+
+    /** Number of keys the store holds before growing for the first time. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private String[] _messages;
+
+    HeapMessageStore() {
+        _messages = new String[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public void put(int key, String message) {
+        if (key >= _messages.length) {
+            _messages = Arrays.copyOf(_messages,
+                Math.max(_messages.length * 2, key + 1));
+        }
+        _messages[key] = message;
+    }
+
+    @Override
+    public String get(int key) {
+        return key < _messages.length ? _messages[key] : null;
+    }
+
+    @Override
+    public boolean isLazy() {
+        return false;
+    }
+
+}
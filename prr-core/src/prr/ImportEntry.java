@@ -0,0 +1,244 @@
+package prr;
+
+import java.util.function.Supplier;
+
+import prr.terminals.Terminal;
+import prr.util.EntryTokenizer;
+import prr.exceptions.DuplicateClientKeyException;
+import prr.exceptions.DuplicateTerminalKeyException;
+import prr.exceptions.IllegalTerminalStatusException;
+import prr.exceptions.InvalidTerminalKeyException;
+import prr.exceptions.UnknownClientKeyException;
+import prr.exceptions.UnknownEntryLengthException;
+import prr.exceptions.UnknownEntryTypeException;
+import prr.exceptions.UnknownTerminalKeyException;
+import prr.exceptions.UnrecognizedEntryException;
+
+/**
+ * Entry (line) of a plain text import file. Parsing an entry only checks what
+ * doesn't depend on the state of the network, so entries can be parsed on any
+ * thread and registered on the network later on.
+ * <p>
+ * The text of the entry is only needed to report errors, so it is obtained
+ * on demand.
+ */
+abstract class ImportEntry {
+
+    /** Supplies the entry as it was read from the file. */
+    private final Supplier<String> _entry;
+
+    ImportEntry(Supplier<String> entry) {
+        _entry = entry;
+    }
+
+    String getEntry() {
+        return _entry.get();
+    }
+
+    /**
+     * Registers the entry on the given network.
+     *
+     * @param network The network to register the entry on
+     * @throws UnrecognizedEntryException if the entry conflicts with the
+     *                                    state of the network
+     */
+    abstract void register(Network network) throws UnrecognizedEntryException;
+
+    /**
+     * Parses an entry line.
+     *
+     * @param entry  The entry line
+     * @param fields The tokenizer used to split the entry into its fields
+     * @return The parsed entry, ready to be registered
+     * @throws UnrecognizedEntryException if the entry type is unknown or the
+     *                                    entry does not have the correct
+     *                                    fields
+     */
+    static ImportEntry parse(String entry, EntryTokenizer fields)
+      throws UnrecognizedEntryException {
+        fields.tokenize(entry, '|');
+        String type = fields.size() > 0 ? fields.get(0) : "";
+        try {
+            switch (type) {
+                case "CLIENT" -> {
+                    assertEntryLength(fields.size(), 4);
+                    return client(() -> entry, fields.get(1), fields.get(2),
+                        Integer.parseInt(fields.get(3)));
+                }
+                case "BASIC", "FANCY" -> {
+                    assertEntryLength(fields.size(), 4);
+                    return terminal(() -> entry, type, fields.get(1),
+                        fields.get(2), fields.get(3));
+                }
+                case "FRIENDS" -> {
+                    assertEntryLength(fields.size(), 3);
+                    String terminalId = fields.get(1);
+                    fields.tokenize(fields.get(2), ',');
+                    String[] terminalFriendsIds = new String[fields.size()];
+                    for (int i = 0; i < terminalFriendsIds.length; i++) {
+                        terminalFriendsIds[i] = fields.get(i);
+                    }
+                    return friends(() -> entry, terminalId, terminalFriendsIds);
+                }
+                default -> throw new UnknownEntryTypeException(type);
+            }
+        } catch (UnknownEntryTypeException | UnknownEntryLengthException |
+          NumberFormatException e) {
+            throw new UnrecognizedEntryException(entry, e);
+        }
+    }
+
+    /**
+     * Creates a client entry, with the format {@code CLIENT|id|name|taxId}.
+     *
+     * @param entry Supplies the text of the entry
+     * @param id    The key of the client
+     * @param name  The name of the client
+     * @param taxId The tax id of the client
+     * @return The client entry
+     */
+    static ImportEntry client(Supplier<String> entry, String id, String name,
+      int taxId) {
+        return new ClientEntry(entry, id, name, taxId);
+    }
+
+    /**
+     * Creates a terminal entry, with the format
+     * {@code terminal-type|idTerminal|idClient|state}.
+     *
+     * @param entry    Supplies the text of the entry
+     * @param type     The terminal type
+     * @param id       The key of the terminal
+     * @param clientId The key of the owner of the terminal
+     * @param status   The initial status of the terminal
+     * @return The terminal entry
+     * @throws UnrecognizedEntryException if the terminal key isn't exactly 6
+     *                                    characters long and only made up of
+     *                                    the digits 0 through 9
+     */
+    static ImportEntry terminal(Supplier<String> entry, String type, String id,
+      String clientId, String status) throws UnrecognizedEntryException {
+        if (!Network.isValidTerminalKey(id)) {
+            throw new UnrecognizedEntryException(entry.get(),
+                new InvalidTerminalKeyException(id));
+        }
+        return new TerminalEntry(entry, type, id, clientId, status);
+    }
+
+    /**
+     * Creates a terminal friends entry, with the format
+     * {@code FRIENDS|idTerminal|idTerminal1,...,idTerminalN}.
+     *
+     * @param entry              Supplies the text of the entry
+     * @param terminalId         The key of the terminal
+     * @param terminalFriendsIds The keys of the terminal friends
+     * @return The terminal friends entry
+     */
+    static ImportEntry friends(Supplier<String> entry, String terminalId,
+      String[] terminalFriendsIds) {
+        return new FriendsEntry(entry, terminalId, terminalFriendsIds);
+    }
+
+    /**
+     * Checks if the entry has the expected number of fields.
+     *
+     * @throws UnknownEntryLengthException if the number of fields doesn't
+     *                                     match the expected value
+     */
+    static void assertEntryLength(int size, int expectedSize)
+      throws UnknownEntryLengthException {
+        if (size != expectedSize) {
+            throw new UnknownEntryLengthException(size);
+        }
+    }
+
+    /**
+     * Client entry.
+     */
+    private static class ClientEntry extends ImportEntry {
+
+        private final String _id;
+        private final String _name;
+        private final int _taxId;
+
+        private ClientEntry(Supplier<String> entry, String id, String name,
+          int taxId) {
+            super(entry);
+            _id = id;
+            _name = name;
+            _taxId = taxId;
+        }
+
+        @Override
+        void register(Network network) throws UnrecognizedEntryException {
+            try {
+                network.registerClient(_id, _name, _taxId);
+            } catch (DuplicateClientKeyException e) {
+                throw new UnrecognizedEntryException(getEntry(), e);
+            }
+        }
+
+    }
+
+    /**
+     * Terminal entry.
+     */
+    private static class TerminalEntry extends ImportEntry {
+
+        private final String _type;
+        private final String _id;
+        private final String _clientId;
+        private final String _status;
+
+        private TerminalEntry(Supplier<String> entry, String type, String id,
+          String clientId, String status) {
+            super(entry);
+            _type = type;
+            _id = id;
+            _clientId = clientId;
+            _status = status;
+        }
+
+        @Override
+        void register(Network network) throws UnrecognizedEntryException {
+            try {
+                Terminal registeredTerminal =
+                    network.registerTerminal(_type, _id, _clientId);
+                registeredTerminal.setStatus(_status);
+            } catch (UnknownClientKeyException | InvalidTerminalKeyException |
+              DuplicateTerminalKeyException | UnknownEntryTypeException |
+              IllegalTerminalStatusException e) {
+                throw new UnrecognizedEntryException(getEntry(), e);
+            }
+        }
+
+    }
+
+    /**
+     * Terminal friends entry.
+     */
+    private static class FriendsEntry extends ImportEntry {
+
+        private final String _terminalId;
+        private final String[] _terminalFriendsIds;
+
+        private FriendsEntry(Supplier<String> entry, String terminalId,
+          String[] terminalFriendsIds) {
+            super(entry);
+            _terminalId = terminalId;
+            _terminalFriendsIds = terminalFriendsIds;
+        }
+
+        @Override
+        void register(Network network) throws UnrecognizedEntryException {
+            try {
+                network.registerTerminalFriends(_terminalId,
+                    _terminalFriendsIds);
+            } catch (UnknownTerminalKeyException e) {
+                throw new UnrecognizedEntryException(getEntry(), e);
+            }
+        }
+
+    }
+
+}
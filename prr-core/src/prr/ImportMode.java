@@ -0,0 +1,23 @@
+package prr;
+
+/**
+ * Ways of importing a plain text file into a network.
+ */
+public enum ImportMode {
+
+    /** Reads and registers every entry, one at a time, in file order. */
+    SEQUENTIAL,
+
+    /**
+     * Parses chunks of entries on every available core, registering the
+     * entries of every chunk in file order once it is parsed.
+     */
+    PARALLEL,
+
+    /**
+     * Reads and registers every entry, one at a time, in file order, scanning
+     * the bytes of the memory-mapped file instead of decoding every line.
+     */
+    MAPPED
+
+}
@@ -0,0 +1,298 @@
+package prr;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+import prr.exceptions.UnknownEntryLengthException;
+import prr.exceptions.UnknownEntryTypeException;
+import prr.exceptions.UnrecognizedEntryException;
+
+/**
+ * Imports plain text files by scanning the bytes of the memory-mapped file
+ * for field, friend and line separators. Entries are registered one at a
+ * time, in file order, just like in the sequential import, but strings are
+ * only created for the keys and names that are handed to the network. Entry
+ * types and terminal states are matched against their known values without
+ * decoding them, and tax ids are read straight from their digits.
+ * <p>
+ * The file must use a charset that encodes the separators as single ASCII
+ * bytes, such as UTF-8, and its lines must end with {@code \n} or
+ * {@code \r\n}.
+ */
+class MappedImporter {
+
+    /** Maximum number of bytes of the file that are mapped at once. */
+    private static final int WINDOW_SIZE = 1 << 28;
+
+    /** Maximum number of digits read straight from a tax id. */
+    private static final int MAX_TAX_ID_DIGITS = 9;
+
+    private static final byte FIELD_SEPARATOR = '|';
+    private static final byte FRIENDS_SEPARATOR = ',';
+    private static final byte LINE_SEPARATOR = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private static final String[] ENTRY_TYPES =
+        { "CLIENT", "BASIC", "FANCY", "FRIENDS" };
+    private static final String[] TERMINAL_STATES = { "ON", "OFF", "SILENCE" };
+
+    private final Network _network;
+    private final Charset _charset;
+    private final Supplier<String> _entry;
+    private MappedByteBuffer _buffer;
+    private int _entryStart;
+    private int _entryEnd;
+    private int[] _fieldStarts;
+    private int[] _fieldEnds;
+    private int _size;
+    private byte[] _bytes;
+
+    MappedImporter(Network network) {
+        _network = network;
+        _charset = Charset.defaultCharset();
+        _entry = () -> decode(_entryStart, _entryEnd);
+        _fieldStarts = new int[8];
+        _fieldEnds = new int[8];
+        _bytes = new byte[64];
+    }
+
+    /**
+     * Imports the given file into the network.
+     *
+     * @param filename Name of the text input file
+     * @throws UnrecognizedEntryException if some entry (line) is not correct
+     * @throws IOException                if there was an IO error while
+     *                                    processing the text file, or if some
+     *                                    entry doesn't fit in a mapped window
+     */
+    void importFile(String filename) throws IOException,
+      UnrecognizedEntryException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename),
+          StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(WINDOW_SIZE, size - position);
+                _buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    length);
+                int consumed = importWindow(position + length == size);
+                if (consumed == 0) {
+                    throw new IOException("Entry at byte " + position +
+                        " of " + filename + " is too long");
+                }
+                position += consumed;
+            }
+        } finally {
+            _buffer = null;
+        }
+    }
+
+    /**
+     * Imports every complete entry of the mapped window. The last entry of
+     * the file doesn't need to end with a line separator.
+     *
+     * @param last Whether the window maps the end of the file
+     * @return The number of bytes of the window that were imported
+     * @throws UnrecognizedEntryException if some entry (line) is not correct
+     */
+    private int importWindow(boolean last) throws UnrecognizedEntryException {
+        int limit = _buffer.limit();
+        int entryStart = 0;
+        int fieldStart = 0;
+        _size = 0;
+        for (int i = 0; i < limit; i++) {
+            byte b = _buffer.get(i);
+            if (b == FIELD_SEPARATOR) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            } else if (b == LINE_SEPARATOR) {
+                int entryEnd = i > entryStart &&
+                    _buffer.get(i - 1) == CARRIAGE_RETURN ? i - 1 : i;
+                addField(fieldStart, Math.max(fieldStart, entryEnd));
+                importEntry(entryStart, entryEnd);
+                entryStart = i + 1;
+                fieldStart = i + 1;
+                _size = 0;
+            }
+        }
+        if (last && entryStart < limit) {
+            addField(fieldStart, limit);
+            importEntry(entryStart, limit);
+            entryStart = limit;
+        }
+        return entryStart;
+    }
+
+    private void addField(int start, int end) {
+        if (_size == _fieldStarts.length) {
+            int[] fieldStarts = new int[_size * 2];
+            int[] fieldEnds = new int[_size * 2];
+            System.arraycopy(_fieldStarts, 0, fieldStarts, 0, _size);
+            System.arraycopy(_fieldEnds, 0, fieldEnds, 0, _size);
+            _fieldStarts = fieldStarts;
+            _fieldEnds = fieldEnds;
+        }
+        _fieldStarts[_size] = start;
+        _fieldEnds[_size] = end;
+        _size++;
+    }
+
+    /**
+     * Discards the trailing empty fields of an entry with separators, so that
+     * entries are split exactly like {@code String.split} does.
+     */
+    private void trimFields() {
+        if (_size > 1) {
+            while (_size > 0 && _fieldStarts[_size - 1] == _fieldEnds[_size - 1]) {
+                _size--;
+            }
+        }
+    }
+
+    /**
+     * Parses the current entry from its fields and registers it.
+     *
+     * @param start The position where the entry starts on the window
+     * @param end   The position where the entry ends on the window
+     * @throws UnrecognizedEntryException if the entry is not correct
+     */
+    private void importEntry(int start, int end)
+      throws UnrecognizedEntryException {
+        _entryStart = start;
+        _entryEnd = end;
+        trimFields();
+        String type = _size > 0 ? match(0, ENTRY_TYPES) : null;
+        try {
+            ImportEntry entry = switch (type != null ? type : "") {
+                case "CLIENT" -> {
+                    ImportEntry.assertEntryLength(_size, 4);
+                    yield ImportEntry.client(_entry, field(1), field(2),
+                        parseInt(3));
+                }
+                case "BASIC", "FANCY" -> {
+                    ImportEntry.assertEntryLength(_size, 4);
+                    String status = match(3, TERMINAL_STATES);
+                    yield ImportEntry.terminal(_entry, type, field(1),
+                        field(2), status != null ? status : field(3));
+                }
+                case "FRIENDS" -> {
+                    ImportEntry.assertEntryLength(_size, 3);
+                    yield ImportEntry.friends(_entry, field(1), friends(2));
+                }
+                default -> throw new UnknownEntryTypeException(
+                    _size > 0 ? field(0) : "");
+            };
+            entry.register(_network);
+        } catch (UnknownEntryTypeException | UnknownEntryLengthException |
+          NumberFormatException e) {
+            throw new UnrecognizedEntryException(_entry.get(), e);
+        }
+    }
+
+    /**
+     * Matches a field against a set of known values without decoding it.
+     *
+     * @param index  The position of the field
+     * @param values The known values, all made up of ASCII characters
+     * @return The matching value, or null if there is none
+     */
+    private String match(int index, String[] values) {
+        int start = _fieldStarts[index];
+        int length = _fieldEnds[index] - start;
+        for (String value : values) {
+            if (value.length() != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && _buffer.get(start + i) == value.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private String field(int index) {
+        return decode(_fieldStarts[index], _fieldEnds[index]);
+    }
+
+    /**
+     * Parses an integer field, reading short unsigned numbers straight from
+     * their digits and leaving everything else to {@link Integer#parseInt}.
+     *
+     * @param index The position of the field
+     * @return The value of the field
+     * @throws NumberFormatException if the field is not a valid integer
+     */
+    private int parseInt(int index) {
+        int start = _fieldStarts[index];
+        int end = _fieldEnds[index];
+        if (end == start || end - start > MAX_TAX_ID_DIGITS) {
+            return Integer.parseInt(field(index));
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = _buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(field(index));
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Splits a field into the keys of the terminal friends.
+     *
+     * @param index The position of the field
+     * @return The keys of the terminal friends
+     */
+    private String[] friends(int index) {
+        int start = _fieldStarts[index];
+        int end = _fieldEnds[index];
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (_buffer.get(i) == FRIENDS_SEPARATOR) {
+                count++;
+            }
+        }
+        if (count > 1) {
+            while (end > start && _buffer.get(end - 1) == FRIENDS_SEPARATOR) {
+                end--;
+                count--;
+            }
+            if (end == start) {
+                return new String[0];
+            }
+        }
+
+        String[] friends = new String[count];
+        int friendStart = start;
+        int friend = 0;
+        for (int i = start; i < end; i++) {
+            if (_buffer.get(i) == FRIENDS_SEPARATOR) {
+                friends[friend++] = decode(friendStart, i);
+                friendStart = i + 1;
+            }
+        }
+        friends[friend] = decode(friendStart, end);
+        return friends;
+    }
+
+    private String decode(int start, int end) {
+        int length = end - start;
+        if (length > _bytes.length) {
+            _bytes = new byte[Math.max(length, _bytes.length * 2)];
+        }
+        _buffer.get(start, _bytes, 0, length);
+        return new String(_bytes, 0, length, _charset);
+    }
+
+}
@@ -0,0 +1,173 @@
+package prr;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the messages off the heap. Messages are appended, as their length
+ * followed by their UTF-8 bytes, to a temporary file that is mapped in
+ * segments, and the position of the message of every id is kept in pages of
+ * direct memory. The heap only holds the segments and pages themselves, so
+ * the messages add nothing for the garbage collector to trace.
+ * <p>
+ * The file is deleted once the store is no longer used, or when the virtual
+ * machine exits.
+ */
+class MappedMessageStore implements MessageStore {
+
+    /** Number of bits of a position that are an offset in its segment. */
+    private static final int SEGMENT_BITS = 26;
+
+    /** Number of bytes of every mapped segment of the file. */
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    /** Number of bits of an id that index a position in its page. */
+    private static final int PAGE_BITS = 16;
+
+    /** Number of positions of every page. */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /** Closes the files of the stores that are no longer used. */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /** Closes, and so deletes, the file of a store. */
+    private static class Closer implements Runnable {
+
+        private final FileChannel _channel;
+
+        private Closer(FileChannel channel) {
+            _channel = channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                _channel.close();
+            } catch (IOException e) {
+                // the file is deleted when the virtual machine exits anyway
+            }
+        }
+
+    }
+
+    private final FileChannel _channel;
+
+    /** The mapped segments of the file, in order. */
+    private MappedByteBuffer[] _segments;
+
+    /** Offset of the next message in the last segment. */
+    private int _offset;
+
+    /**
+     * The positions of the messages in the file plus one, or 0 for ids
+     * without a message, in pages of direct memory allocated as needed.
+     */
+    private ByteBuffer[] _pages;
+
+    /** The messages that don't fit in a segment, kept on the heap. */
+    private final Map<Integer, String> _oversized;
+
+    /**
+     * Creates an empty store in a new temporary file.
+     *
+     * @throws IOException if the file cannot be created
+     */
+    MappedMessageStore() throws IOException {
+        Path file = Files.createTempFile("prr-messages", ".dat");
+        _channel = FileChannel.open(file, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        CLEANER.register(this, new Closer(_channel));
+        _segments = new MappedByteBuffer[0];
+        _offset = SEGMENT_SIZE;
+        _pages = new ByteBuffer[0];
+        _oversized = new HashMap<Integer, String>();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if the file cannot grow
+     */
+    @Override
+    public synchronized void put(int id, String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        int length = Integer.BYTES + bytes.length;
+        if (length > SEGMENT_SIZE) {
+            _oversized.put(id, message);
+            setPosition(id, 0);
+            return;
+        }
+        if (_offset + length > SEGMENT_SIZE) {
+            mapSegment();
+        }
+        MappedByteBuffer segment = _segments[_segments.length - 1];
+        segment.putInt(_offset, bytes.length);
+        segment.put(_offset + Integer.BYTES, bytes);
+        setPosition(id,
+            ((long) (_segments.length - 1) << SEGMENT_BITS | _offset) + 1);
+        _offset += length;
+    }
+
+    private void mapSegment() {
+        try {
+            MappedByteBuffer segment = _channel.map(
+                FileChannel.MapMode.READ_WRITE,
+                (long) _segments.length << SEGMENT_BITS, SEGMENT_SIZE);
+            _segments = Arrays.copyOf(_segments, _segments.length + 1);
+            _segments[_segments.length - 1] = segment;
+            _offset = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void setPosition(int id, long position) {
+        int page = id >> PAGE_BITS;
+        if (page >= _pages.length) {
+            _pages = Arrays.copyOf(_pages, page + 1);
+        }
+        if (_pages[page] == null) {
+            _pages[page] = ByteBuffer.allocateDirect(PAGE_SIZE * Long.BYTES);
+        }
+        _pages[page].putLong((id & (PAGE_SIZE - 1)) * Long.BYTES, position);
+    }
+
+    private long getPosition(int id) {
+        int page = id >> PAGE_BITS;
+        if (page >= _pages.length || _pages[page] == null) {
+            return 0;
+        }
+        return _pages[page].getLong((id & (PAGE_SIZE - 1)) * Long.BYTES);
+    }
+
+    @Override
+    public synchronized String get(int id) {
+        long position = getPosition(id) - 1;
+        if (position < 0) {
+            return _oversized.get(id);
+        }
+        MappedByteBuffer segment =
+            _segments[(int) (position >>> SEGMENT_BITS)];
+        int offset = (int) (position & (SEGMENT_SIZE - 1));
+        byte[] bytes = new byte[segment.getInt(offset)];
+        segment.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean isLazy() {
+        return true;
+    }
+
+}
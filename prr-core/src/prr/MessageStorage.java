@@ -0,0 +1,20 @@
+package prr;
+
+/**
+ * Ways of keeping the messages of the finished text communications of a
+ * network.
+ */
+public enum MessageStorage {
+
+    /** Keeps every message on the heap, as a string. */
+    HEAP,
+
+    /**
+     * Keeps the messages off the heap, in an append-only memory-mapped
+     * temporary file, with their positions in memory outside the heap too.
+     * Only the lengths of the messages stay on the heap, and messages are
+     * read back from the file when they are asked for.
+     */
+    MAPPED
+
+}
@@ -0,0 +1,44 @@
+package prr;
+
+import java.io.IOException;
+
+/**
+ * Keeps the messages of the text communications of a
+ * {@link CommunicationStore}, by keys the store gives them.
+ */
+interface MessageStore {
+
+    /**
+     * Keeps the message of a communication.
+     *
+     * @param key     The key of the message
+     * @param message The message
+     */
+    void put(int key, String message);
+
+    /**
+     * Gets the message of a communication.
+     *
+     * @param key The key of the message
+     * @return The message, or null if there is none
+     */
+    String get(int key);
+
+    /** @return true if the messages are only read when they are asked for */
+    boolean isLazy();
+
+    /**
+     * Creates an empty store of messages.
+     *
+     * @param storage Where the store keeps the messages
+     * @return The store
+     * @throws IOException if the file of a mapped store cannot be created
+     */
+    static MessageStore create(MessageStorage storage) throws IOException {
+        return switch (storage) {
+            case HEAP -> new HeapMessageStore();
+            case MAPPED -> new MappedMessageStore();
+        };
+    }
+
+}
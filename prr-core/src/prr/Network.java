@@ -1,95 +1,333 @@
 package prr;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.io.Serial;
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 import prr.clients.Client;
+import prr.clients.ClientDebtIndex;
+import prr.clients.ClientKeys;
 import prr.communications.Communication;
+import prr.communications.CommunicationOutcome;
 import prr.notifications.Notification;
+import prr.tariffs.TariffPlan;
 import prr.terminals.BasicTerminal;
 import prr.terminals.FancyTerminal;
 import prr.terminals.Terminal;
+import prr.terminals.TerminalKeys;
+import prr.util.BalanceObserver;
+import prr.util.EntryTokenizer;
+import prr.util.TerminalObserver;
 import prr.exceptions.DuplicateClientKeyException;
 import prr.exceptions.DuplicateTerminalKeyException;
 import prr.exceptions.ImportFileException;
 import prr.exceptions.InvalidCommunicationException;
-import prr.exceptions.IllegalTerminalStatusException;
 import prr.exceptions.InvalidFriendException;
 import prr.exceptions.InvalidTerminalKeyException;
 import prr.exceptions.NotificationsAlreadyToggledException;
 import prr.exceptions.UnknownClientKeyException;
-import prr.exceptions.UnknownEntryLengthException;
 import prr.exceptions.UnknownEntryTypeException;
 import prr.exceptions.UnknownTerminalKeyException;
 import prr.exceptions.UnrecognizedEntryException;
+import prr.exceptions.UnreachableBusyTerminalException;
+import prr.exceptions.UnreachableOffTerminalException;
+import prr.exceptions.UnreachableSilentTerminalException;
+import prr.exceptions.UnsupportedCommunicationAtDestinationException;
+import prr.exceptions.UnsupportedCommunicationAtOriginException;
 
 /**
  * Class Store implements a store.
+ * <p>
+ * Communications can be made and ended by many threads at once through
+ * {@link #sendSMS(String, String, String)},
+ * {@link #makeVoiceCall(String, String)},
+ * {@link #makeVideoCall(String, String)} and
+ * {@link #endOngoingCommunication(String, int)}, which lock the stripes of
+ * both terminals of the communication and then the client that makes it.
+ * Communication keys are handed out atomically, in sequence. A communication
+ * is kept by the shard of the terminal that made it (see
+ * {@link NetworkShard}), together with what it changes about its terminals
+ * and clients, each shard under a lock of its own, so communications made
+ * by terminals of different shards mostly lock different shards. Queries
+ * over the whole network merge what every shard holds. Clients and
+ * terminals must be registered, and the network queried and saved, while no
+ * such traffic is going on.
  */
-public class Network implements Serializable {
+public class Network implements Serializable, BalanceObserver,
+  TerminalObserver {
 
     /** Serial number for serialization. */
     @Serial
     private static final long serialVersionUID = 202208091753L;
 
-    /** Stores the network's clients, sorted by their id. */
+    /** Hands out communication IDs atomically. */
+    private static final VarHandle NEXT_COMMUNICATION_ID;
+
+    static {
+        try {
+            NEXT_COMMUNICATION_ID = MethodHandles.lookup().findVarHandle(
+                Network.class, "_nextCommunicationId", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Stores the network's clients by their case-folded id (see
+     * {@link ClientKeys}), so that looking a client up is hashing its id.
+     */
     private Map<String, Client> _clients;
 
-    /** Stores the network's terminals, sorted by their id. */
-    private Map<String, Terminal> _terminals;
+    /**
+     * The network's clients sorted by their case-insensitive id, or null
+     * until a listing asks for them once a client was registered.
+     */
+    private transient volatile List<Client> _sortedClients;
 
-    /** Stores the network's communications, sorted by their id. */
+    /**
+     * Stores the network's terminals, sorted by their id. They are restored
+     * from their owners, so they are left out of the serialized network.
+     */
+    private transient TerminalTable _terminals;
+
+    /**
+     * Stores the finished communications of every shard, merged in the order
+     * of their ids, while the network is serialized, as networks saved
+     * before every shard had a store of its own did. They are moved into the
+     * shards when the network is loaded, so this is null otherwise.
+     */
+    private CommunicationStore _store;
+
+    /**
+     * Stores the ongoing communications by their id while the network is
+     * serialized, as networks saved before they were kept by the shards did.
+     * They are moved into the shards when the network is loaded, so this is
+     * null otherwise.
+     */
+    private Map<Integer, Communication> _ongoingCommunications;
+
+    /**
+     * Stores the communications of networks saved before the store existed,
+     * sorted by their id. They are moved into the store when such a network
+     * is loaded, so this is null otherwise.
+     */
     private Map<Integer, Communication> _communications;
 
+    /**
+     * The shards of the network, which keep the ongoing communications, the
+     * communication indexes, the running totals of the payments and debts
+     * and the indexes of clients and terminals. They are rebuilt from the
+     * clients and the communications when the network is loaded.
+     */
+    private transient NetworkShard[] _shards;
+
+    /** Tells which shard keeps every communication, by its id. */
+    private transient ShardDirectory _directory;
+
     /** Contains the ID for the next communication created by the network. */
     private int _nextCommunicationId;
 
-    /** Stores the current entry from the file that is being parsed. */
-    private String _currentEntry;
-
     /** Was the network changed since the last time it was saved or created? */
-    private boolean _changed;
+    private volatile boolean _changed;
+
+    /** Records the operations performed since the network was last saved. */
+    private transient NetworkJournal _journal;
+
+    /** Locks the terminals of communications made by many threads at once. */
+    private transient TerminalLocks _terminalLocks;
 
     /** Default constructor. */
     public Network() {
-        _clients = new TreeMap<String, Client>(String.CASE_INSENSITIVE_ORDER);
-        _terminals = new TreeMap<String, Terminal>();
-        _communications = new TreeMap<Integer, Communication>();
+        _clients = new HashMap<String, Client>();
+        _terminals = new TerminalTable();
+        _store = null;
+        _ongoingCommunications = null;
+        _communications = null;
+        _directory = new ShardDirectory();
+        _shards = newShards(_directory);
         _nextCommunicationId = 1;
-        _currentEntry = "";
         _changed = true;
+        _journal = new NetworkJournal();
+        _terminalLocks = new TerminalLocks();
     }
 
     /**
      * Gets the global payments performed in the network.
      *
-     * @return the global payments
+     * @return the global payments, in cents
      */
-    public double getGlobalPayments() {
-        return _clients.values().stream()
-                .mapToDouble(c -> c.getPayments())
-                .sum();
+    public long getGlobalPayments() {
+        long payments = 0L;
+        for (NetworkShard shard : _shards) {
+            payments += shard.getPayments();
+        }
+        return payments;
     }
 
     /**
      * Gets the global debts acquired in the network.
      *
-     * @return the global debts
+     * @return the global debts, in cents
+     */
+    public long getGlobalDebts() {
+        long debts = 0L;
+        for (NetworkShard shard : _shards) {
+            debts += shard.getDebts();
+        }
+        return debts;
+    }
+
+    /**
+     * Gets the difference between the running total of the global payments
+     * and the sum of the payments of every client. A consistent network has
+     * no drift.
+     *
+     * @return the drift of the global payments, in cents
+     */
+    public long getGlobalPaymentsDrift() {
+        return getGlobalPayments() - sumClientPayments();
+    }
+
+    /**
+     * Gets the difference between the running total of the global debts and
+     * the sum of the debts of every client. A consistent network has no
+     * drift.
+     *
+     * @return the drift of the global debts, in cents
      */
-    public double getGlobalDebts() {
-        return _clients.values().stream()
-                .mapToDouble(c -> c.getDebts())
+    public long getGlobalDebtsDrift() {
+        return getGlobalDebts() - sumClientDebts();
+    }
+
+    /**
+     * Sums the payments of every client in the network.
+     *
+     * @return the sum of the clients' payments
+     */
+    private long sumClientPayments() {
+        return getSortedClients().stream()
+                .mapToLong(c -> c.getPayments())
                 .sum();
     }
 
+    /**
+     * Sums the debts of every client in the network.
+     *
+     * @return the sum of the clients' debts
+     */
+    private long sumClientDebts() {
+        return getSortedClients().stream()
+                .mapToLong(c -> c.getDebts())
+                .sum();
+    }
+
+    /**
+     * Updates the running totals and the debt index of the shard of a client
+     * whenever the balance of a client of the network changes.
+     *
+     * @param client        The client whose balance changed
+     * @param paymentsDelta The amount added to the client's payments, in cents
+     * @param debtsDelta    The amount added to the client's debts, in cents
+     */
+    @Override
+    public void balanceUpdated(Client client, long paymentsDelta,
+      long debtsDelta) {
+        shardOf(client).balanceUpdated(client, paymentsDelta, debtsDelta);
+    }
+
+    /**
+     * Removes a terminal of the network from the unused terminals once it
+     * takes part in a communication.
+     *
+     * @param terminal The terminal that was used
+     */
+    @Override
+    public void terminalUsed(Terminal terminal) {
+        shardOf(terminal.getNumber()).setUnused(terminal, false);
+    }
+
+    /**
+     * Moves a terminal of the network in or out of the terminals with a
+     * positive balance whenever its balance changes.
+     *
+     * @param terminal The terminal whose balance changed
+     */
+    @Override
+    public void terminalBalanceUpdated(Terminal terminal) {
+        shardOf(terminal.getNumber()).terminalBalanceUpdated(terminal);
+    }
+
+    /**
+     * Makes the shards of a network.
+     *
+     * @param directory Tells where every communication of the network is kept
+     * @return The shards, without anything in them yet
+     */
+    private static NetworkShard[] newShards(ShardDirectory directory) {
+        NetworkShard[] shards = new NetworkShard[NetworkShard.SHARDS];
+        Arrays.setAll(shards, i -> new NetworkShard(i, directory));
+        return shards;
+    }
+
+    /**
+     * Gets the shard that keeps what is hashed to a given hash.
+     *
+     * @param hash The hash
+     * @return The shard
+     */
+    private NetworkShard shard(int hash) {
+        return _shards[shardIndex(hash)];
+    }
+
+    /**
+     * Gets the index of the shard that keeps what is hashed to a given hash.
+     *
+     * @param hash The hash
+     * @return The index of the shard
+     */
+    private int shardIndex(int hash) {
+        return (hash ^ (hash >>> 16)) & (_shards.length - 1);
+    }
+
+    /**
+     * Gets the shard of a terminal, by the number its key spells.
+     *
+     * @param number The number of the terminal
+     * @return The shard of the terminal
+     */
+    private NetworkShard shardOf(int number) {
+        return shard(number);
+    }
+
+    /**
+     * Gets the shard of a client, by its identity, which only needs to stay
+     * the same while the network is in memory.
+     *
+     * @param client The client
+     * @return The shard of the client
+     */
+    private NetworkShard shardOf(Client client) {
+        return shard(System.identityHashCode(client));
+    }
+
     /**
      * Gets a client by its key. Two clients are considered the same in the
      * network if their keyss are the same, or only differ by their case.
@@ -114,7 +352,7 @@ public class Network implements Serializable {
      *                                   network.
      */
     private Client fetchClient(String id) throws UnknownClientKeyException {
-        Client client = _clients.get(id);
+        Client client = _clients.get(ClientKeys.fold(id));
         if (client == null) {
             throw new UnknownClientKeyException(id);
         }
@@ -125,11 +363,11 @@ public class Network implements Serializable {
      * Gets the payments of a given client.
      *
      * @param id The key of the client
-     * @return The given clients payments
+     * @return The given clients payments, in cents
      * @throws UnknownClientKeyException if the client id is not present in the
      *                                   network.
      */
-    public double getClientPayments(String id) throws UnknownClientKeyException {
+    public long getClientPayments(String id) throws UnknownClientKeyException {
         final Client client = getClient(id);
         return client.getPayments();
     }
@@ -138,11 +376,11 @@ public class Network implements Serializable {
      * Gets the debts of a given client.
      *
      * @param id The key of the client
-     * @return The given clients debts
+     * @return The given clients debts, in cents
      * @throws UnknownClientKeyException if the client key is not present in the
      *                                   network.
      */
-    public double getClientDebts(String id) throws UnknownClientKeyException {
+    public long getClientDebts(String id) throws UnknownClientKeyException {
         final Client client = getClient(id);
         return client.getDebts();
     }
@@ -159,8 +397,10 @@ public class Network implements Serializable {
     public Collection<Notification> getClientNotifications(String clientId)
       throws UnknownClientKeyException {
         final Client client = getClient(clientId);
+        Collection<Notification> notifications = client.readNotifications();
+        _journal.recordNotificationsReading(clientId);
         changed();
-        return Collections.unmodifiableCollection(client.readNotifications());
+        return Collections.unmodifiableCollection(notifications);
     }
 
     /**
@@ -170,7 +410,55 @@ public class Network implements Serializable {
      * @return The clients sorted by their key on a {@link Collection}
      */
     public Collection<Client> getAllClients() {
-        return Collections.unmodifiableCollection(_clients.values());
+        return getSortedClients();
+    }
+
+    /**
+     * Gets the clients of the network sorted by their case-insensitive key,
+     * sorting them only if a client was registered since they were last
+     * sorted.
+     *
+     * @return The sorted clients on an unmodifiable {@link List}
+     */
+    private List<Client> getSortedClients() {
+        List<Client> clients = _sortedClients;
+        if (clients == null) {
+            Client[] sorted = _clients.values().toArray(new Client[0]);
+            Arrays.sort(sorted, (a, b) ->
+                String.CASE_INSENSITIVE_ORDER.compare(a.getId(), b.getId()));
+            clients = Collections.unmodifiableList(Arrays.asList(sorted));
+            _sortedClients = clients;
+        }
+        return clients;
+    }
+
+    /**
+     * Gets a page of the clients associated to the network, sorted by their
+     * case-insensitive key. The first client after the given key is found by
+     * a binary search, and the sorted clients are walked in place from it.
+     *
+     * @param after The key of the client the page starts after, as given by
+     *              {@link Page#getNext()}, or null to start with the first
+     * @param limit The maximum number of clients of the page
+     * @return The page of clients
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public Page<Client> getClientsPage(String after, int limit) {
+        List<Client> clients = getSortedClients();
+        int from = 0;
+        if (after != null) {
+            int to = clients.size();
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                if (String.CASE_INSENSITIVE_ORDER.compare(
+                  clients.get(middle).getId(), after) <= 0) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+        }
+        return page(clients.listIterator(from), limit, Client::getId);
     }
 
     /**
@@ -182,25 +470,38 @@ public class Network implements Serializable {
      */
     public Collection<Client> getClientsWithoutDebts() {
         return Collections.unmodifiableCollection(
-            _clients.values().stream()
-            .filter(c -> c.getDebts() == 0D)
+            getSortedClients().stream()
+            .filter(c -> c.getDebts() == 0L)
             .collect(Collectors.toList())
         );
     }
 
     /**
      * Gets all the clients associated to the network that have acquired debt,
-     * sorted by their case-insensitive key.
+     * sorted by decreasing debts and then by their case-insensitive key.
      *
-     * @return The clients with debts sorted by their key on
+     * @return The clients with debts sorted by their debts on
      * a {@link Collection}
      */
     public Collection<Client> getClientsWithDebts() {
-        return Collections.unmodifiableCollection(
-            _clients.values().stream()
-            .filter(c -> c.getDebts() > 0D)
-            .collect(Collectors.toList())
-        );
+        return getClientsWithDebts(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the clients associated to the network with the highest debts,
+     * sorted by decreasing debts and then by their case-insensitive key.
+     *
+     * @param limit The maximum number of clients to get
+     * @return The clients with the highest debts sorted by their debts on
+     * a {@link Collection}
+     */
+    public Collection<Client> getClientsWithDebts(int limit) {
+        List<Collection<Client>> clients =
+            new ArrayList<Collection<Client>>(_shards.length);
+        for (NetworkShard shard : _shards) {
+            clients.add(shard.getClientsWithDebts(limit));
+        }
+        return ClientDebtIndex.merge(clients, limit);
     }
 
     /**
@@ -220,6 +521,7 @@ public class Network implements Serializable {
             throw new NotificationsAlreadyToggledException(true);
         }
         client.setNotificationState(true);
+        _journal.recordNotificationsToggle(clientId, true);
         changed();
     }
 
@@ -240,6 +542,7 @@ public class Network implements Serializable {
             throw new NotificationsAlreadyToggledException(false);
         }
         client.setNotificationState(false);
+        _journal.recordNotificationsToggle(clientId, false);
         changed();
     }
 
@@ -268,51 +571,101 @@ public class Network implements Serializable {
      */
     private Terminal fetchTerminal(String id)
       throws UnknownTerminalKeyException {
-        Terminal terminal = _terminals.get(id);
+        Terminal terminal = findTerminal(id);
         if (terminal == null) {
             throw new UnknownTerminalKeyException(id);
         }
         return terminal;
     }
 
+    /**
+     * Looks a terminal up by its key, without throwing if it isn't there.
+     *
+     * @param id The key of the terminal to look up
+     * @return The {@link Terminal} with the given key, or null if it is not
+     *         present in the network
+     */
+    public Terminal findTerminal(String id) {
+        return _terminals.get(TerminalKeys.toNumber(id));
+    }
+
+    /**
+     * Looks a terminal up by the number its key spells.
+     *
+     * @param number The number of the terminal
+     * @return The {@link Terminal} with that number, or null if it is not
+     *         present in the network
+     */
+    Terminal findTerminal(int number) {
+        return _terminals.get(number);
+    }
+
     /**
      * Gets all the terminals associated to the network, sorted by their key.
      *
      * @return The terminals sorted by their key on a {@link Collection}
      */
     public Collection<Terminal> getAllTerminals() {
-        return Collections.unmodifiableCollection(_terminals.values());
+        return Collections.unmodifiableCollection(_terminals);
+    }
+
+    /**
+     * Gets a page of the terminals associated to the network, sorted by their
+     * key, walking the terminals in place from the slot after the given key.
+     *
+     * @param after The key of the terminal the page starts after, as given by
+     *              {@link Page#getNext()}, or null to start with the first
+     * @param limit The maximum number of terminals of the page
+     * @return The page of terminals
+     * @throws IllegalArgumentException if the key is not a terminal key or
+     *                                  the limit is not positive
+     */
+    public Page<Terminal> getTerminalsPage(String after, int limit) {
+        int from = 0;
+        if (after != null) {
+            from = TerminalKeys.toNumber(after);
+            if (from < 0) {
+                throw new IllegalArgumentException("invalid cursor " + after);
+            }
+            from++;
+        }
+        return page(_terminals.iterator(from), limit, Terminal::getTerminalId);
     }
 
     /**
      * Gets all the unused terminals associated to the network, sorted by their
      * key. A terminal is considered unused if there are no known communications
-     * associated with it.
+     * associated with it. The unused terminals are indexed as terminals are
+     * registered and used, so only they are walked.
      *
      * @return The unusued terminals sorted by their key on a {@link Collection}
      */
     public Collection<Terminal> getUnusedTerminals() {
+        TerminalSet unused = new TerminalSet();
+        for (NetworkShard shard : _shards) {
+            shard.addUnusedTerminalsTo(unused);
+        }
         return Collections.unmodifiableCollection(
-            _terminals.values().stream()
-            .filter(t -> t.isUnused())
-            .collect(Collectors.toList())
-        );
+            unused.getTerminals(_terminals));
     }
 
     /**
      * Gets all the terminals with a positive balance associated to the network,
      * sorted by their key. The concept of balance is defined as the difference
-     * between the payments made and debts acquired by the terminal.
+     * between the payments made and debts acquired by the terminal. The
+     * terminals are indexed as their balance changes, so only those with a
+     * positive balance are walked.
      *
      * @return The terminals with a net positive balance sorted by their key on
      * a {@link Collection}
      */
     public Collection<Terminal> getTerminalsWithPositiveBalance() {
+        TerminalSet positive = new TerminalSet();
+        for (NetworkShard shard : _shards) {
+            shard.addTerminalsWithPositiveBalanceTo(positive);
+        }
         return Collections.unmodifiableCollection(
-            _terminals.values().stream()
-            .filter(t -> t.getBalance() > 0)
-            .collect(Collectors.toList())
-        );
+            positive.getTerminals(_terminals));
     }
 
     /**
@@ -323,7 +676,7 @@ public class Network implements Serializable {
      * @return The next communication ID for a new communication
      */
     public int getNextCommunicationId() {
-        return _nextCommunicationId++;
+        return (int) NEXT_COMMUNICATION_ID.getAndAdd(this, 1);
     }
 
     /**
@@ -352,13 +705,90 @@ public class Network implements Serializable {
      */
     private Communication fetchCommunication(int id)
       throws InvalidCommunicationException {
-        Communication communication = _communications.get(id);
+        Communication communication = findCommunication(id);
         if (communication == null) {
             throw new InvalidCommunicationException();
         }
         return communication;
     }
 
+    /**
+     * Finds a communication by its key, turning it back into an object if it
+     * is finished, locking only the shard that keeps it.
+     *
+     * @param id The key of the communication
+     * @return The communication, or null if it is not present in the network
+     */
+    private Communication findCommunication(int id) {
+        int entry = _directory.get(id);
+        return entry < 0 ? null : _shards[ShardDirectory.shard(entry)]
+            .getCommunication(id, _terminals);
+    }
+
+    /**
+     * Finds some communications by their keys, locking every shard that
+     * keeps some of them once, turning the finished ones back into objects.
+     *
+     * @param ids The keys of the communications
+     * @return The communications, in the order of their keys, with null for
+     *         those that are not present in the network
+     */
+    private Communication[] findCommunications(int[] ids) {
+        int[] starts = new int[_shards.length + 1];
+        int[] shards = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int entry = _directory.get(ids[i]);
+            shards[i] = entry < 0 ? -1 : ShardDirectory.shard(entry);
+            if (shards[i] >= 0) {
+                starts[shards[i] + 1]++;
+            }
+        }
+        for (int shard = 0; shard < _shards.length; shard++) {
+            starts[shard + 1] += starts[shard];
+        }
+        int[] order = new int[starts[_shards.length]];
+        int[] shardIds = new int[order.length];
+        int[] next = Arrays.copyOf(starts, _shards.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (shards[i] >= 0) {
+                int position = next[shards[i]]++;
+                order[position] = i;
+                shardIds[position] = ids[i];
+            }
+        }
+        Communication[] found = new Communication[order.length];
+        for (int shard = 0; shard < _shards.length; shard++) {
+            if (starts[shard] < starts[shard + 1]) {
+                _shards[shard].getCommunications(shardIds, starts[shard],
+                    starts[shard + 1], _terminals, found);
+            }
+        }
+        Communication[] communications = new Communication[ids.length];
+        for (int position = 0; position < order.length; position++) {
+            communications[order[position]] = found[position];
+        }
+        return communications;
+    }
+
+    /**
+     * Takes a view of the communications of every shard, locking each shard
+     * once, so that they can be read while traffic goes on, and merges them
+     * in the order of their keys.
+     *
+     * @param ongoing The map the ongoing communications are added to, by
+     *                their id
+     * @return The merge of the views of the stores of the shards
+     * @see NetworkShard#view(Map)
+     */
+    CommunicationStore.Merge viewCommunications(
+      Map<Integer, Communication> ongoing) {
+        CommunicationStore[] views = new CommunicationStore[_shards.length];
+        for (int i = 0; i < _shards.length; i++) {
+            views[i] = _shards[i].view(ongoing);
+        }
+        return new CommunicationStore.Merge(views, _directory);
+    }
+
     /**
      * Gets all the communications associated to the network, sorted by their
      * key.
@@ -366,10 +796,125 @@ public class Network implements Serializable {
      * @return The communications sorted by their key on a {@link Collection}
      */
     public Collection<Communication> getAllCommunications() {
-        return Collections.unmodifiableCollection(
-            _communications.values().stream()
-            .collect(Collectors.toList())
-        );
+        return Collections.unmodifiableCollection(getCommunications());
+    }
+
+    /**
+     * Gets a page of the communications associated to the network, sorted by
+     * their key. The keys of the page, and of one more communication, are
+     * found in the directory of the shards, and then looked up locking every
+     * shard once, so only the communications of the page are turned back
+     * into objects.
+     *
+     * @param after The key of the communication the page starts after, as
+     *              given by {@link Page#getNext()}, or null to start with the
+     *              first
+     * @param limit The maximum number of communications of the page
+     * @return The page of communications
+     * @throws IllegalArgumentException if the key is not a number or the limit
+     *                                  is not positive
+     */
+    public Page<Communication> getCommunicationsPage(
+      String after, int limit) {
+        int from = after == null ? 0 : Integer.parseInt(after) + 1;
+        if (limit <= 0) {
+            throw new IllegalArgumentException("invalid limit " + limit);
+        }
+        int end = (int) NEXT_COMMUNICATION_ID.getVolatile(this);
+        int wanted = limit < Integer.MAX_VALUE ? limit + 1 : limit;
+        int id = Math.max(from, 0);
+        List<Communication> communications =
+            new ArrayList<Communication>(Math.max(Math.min(wanted, end - id),
+                0));
+        while (communications.size() < wanted && id < end) {
+            int[] ids = new int[Math.min(wanted - communications.size(),
+                end - id)];
+            int count = 0;
+            for (; count < ids.length && id < end; id++) {
+                if (_directory.get(id) >= 0) {
+                    ids[count++] = id;
+                }
+            }
+            for (Communication communication :
+              findCommunications(Arrays.copyOf(ids, count))) {
+                if (communication != null) {
+                    communications.add(communication);
+                }
+            }
+        }
+        return page(communications.iterator(), limit,
+            c -> Integer.toString(c.getId()));
+    }
+
+    /**
+     * Gets the communication of a row of a view of the store of a shard,
+     * turning it back into an object if it is finished.
+     *
+     * @param store   The view
+     * @param row     The row
+     * @param ongoing The ongoing communications of the view, by their id
+     * @return The communication
+     */
+    private Communication getCommunication(CommunicationStore store, int row,
+      Map<Integer, Communication> ongoing) {
+        return store.isOngoing(row) ? ongoing.get(store.getId(row)) :
+            store.get(row, _terminals);
+    }
+
+    /**
+     * Takes a page of items from an iterator over a listing sorted by key.
+     *
+     * @param items The items from the first of the page on
+     * @param limit The maximum number of items of the page
+     * @param key   Gives the key of an item, to continue the listing after
+     * @return The page of items
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    private static <T> Page<T> page(Iterator<T> items, int limit,
+      Function<T, String> key) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("invalid limit " + limit);
+        }
+        List<T> page = new ArrayList<T>(Math.min(limit, 1024));
+        while (page.size() < limit && items.hasNext()) {
+            page.add(items.next());
+        }
+        return new Page<T>(page, items.hasNext() ?
+            key.apply(page.get(page.size() - 1)) : null);
+    }
+
+    /**
+     * Computes what the finished communications of the network would have
+     * cost under another tariff plan, without changing the network. The
+     * stores of the shards are viewed once each, the rows of the finished
+     * communications made by every terminal are found in the view of its
+     * shard, and they are then re-rated in parallel, terminal by terminal,
+     * so that traffic can go on meanwhile.
+     *
+     * @param plan The plan to price the communications with
+     * @return The current and re-rated revenue of every terminal and client
+     * @see ReRating
+     */
+    public ReRating reRate(TariffPlan plan) {
+        List<Client> clients = getSortedClients();
+        Terminal[] terminals = _terminals.toArray(new Terminal[0]);
+        CommunicationStore[] views = new CommunicationStore[_shards.length];
+        CommunicationStore[] stores = new CommunicationStore[terminals.length];
+        int[][] made = new int[terminals.length][];
+        for (int i = 0; i < terminals.length; i++) {
+            int shard = shardIndex(terminals[i].getNumber());
+            if (views[shard] == null) {
+                views[shard] = _shards[shard].view(
+                    new HashMap<Integer, Communication>());
+            }
+            CommunicationStore store = views[shard];
+            stores[i] = store;
+            made[i] = Arrays.stream(_shards[shard].getCommunicationsMade(
+                terminals[i].getTerminalId())).map(id -> store.find(id,
+                    ShardDirectory.row(_directory.get(id))))
+                .filter(row -> row >= 0 && !store.isOngoing(row)).toArray();
+        }
+        return new ReRating(plan, terminals, made, stores, clients);
     }
 
     /**
@@ -385,12 +930,8 @@ public class Network implements Serializable {
     public Collection<Communication> getCommunicationsMadeByClient(
       String clientId) throws UnknownClientKeyException {
         final Client client = getClient(clientId);
-
-        return Collections.unmodifiableCollection(
-            _communications.values().stream()
-            .filter(c -> client.isOwnerOf(c.getTerminalSender()))
-            .collect(Collectors.toList())
-        );
+        return getIndexedCommunications(NetworkShard::getCommunicationsMade,
+            client.getTerminals());
     }
 
     /**
@@ -406,21 +947,333 @@ public class Network implements Serializable {
     public Collection<Communication> getCommunicationsReceivedByClient(
       String clientId) throws UnknownClientKeyException {
         final Client client = getClient(clientId);
+        return getIndexedCommunications(
+            NetworkShard::getCommunicationsReceived, client.getTerminals());
+    }
 
-        return Collections.unmodifiableCollection(
-            _communications.values().stream()
-            .filter(c -> client.isOwnerOf(c.getTerminalReceiver()))
-            .collect(Collectors.toList())
-        );
+    /**
+     * Gets all the communications made by a given terminal.
+     *
+     * @param terminalId The key of the terminal
+     * @return The communications made by the terminal, sorted by their key on
+     * a {@link Collection}
+     * @throws UnknownTerminalKeyException if the terminal key is not present in
+     *                                     the network.
+     */
+    public Collection<Communication> getCommunicationsMadeByTerminal(
+      String terminalId) throws UnknownTerminalKeyException {
+        final Terminal terminal = getTerminal(terminalId);
+        return getIndexedCommunications(NetworkShard::getCommunicationsMade,
+            List.of(terminal));
     }
 
     /**
-     * Sets the current entry being parsed.
+     * Gets all the communications received by a given terminal.
      *
-     * @param entry The current entry being parsed
+     * @param terminalId The key of the terminal
+     * @return The communications received by the terminal, sorted by their key
+     * on a {@link Collection}
+     * @throws UnknownTerminalKeyException if the terminal key is not present in
+     *                                     the network.
      */
-    private void setCurrentEntry(String entry) {
-        _currentEntry = entry;
+    public Collection<Communication> getCommunicationsReceivedByTerminal(
+      String terminalId) throws UnknownTerminalKeyException {
+        final Terminal terminal = getTerminal(terminalId);
+        return getIndexedCommunications(
+            NetworkShard::getCommunicationsReceived, List.of(terminal));
+    }
+
+    /**
+     * Gets the communications indexed under some terminals. The ids of every
+     * terminal are sorted already, so they are merged at once into an array
+     * of the size of all of them, and the communications are then looked up
+     * locking every shard that keeps some of them once.
+     *
+     * @param index     Gets the ids indexed under a terminal from its shard
+     * @param terminals The terminals
+     * @return The indexed communications, sorted by their key, or an empty
+     *         {@link Collection} if there are none
+     */
+    private Collection<Communication> getIndexedCommunications(
+      BiFunction<NetworkShard, String, int[]> index,
+      Collection<Terminal> terminals) {
+        Terminal[] indexed = terminals.toArray(new Terminal[0]);
+        int[][] terminalIds = new int[indexed.length][];
+        int length = 0;
+        for (int i = 0; i < indexed.length; i++) {
+            terminalIds[i] = index.apply(shardOf(indexed[i].getNumber()),
+                indexed[i].getTerminalId());
+            length += terminalIds[i].length;
+        }
+        int[] ids = new int[length];
+        int[] next = new int[indexed.length];
+        for (int merged = 0; merged < length; merged++) {
+            int lowest = -1;
+            for (int i = 0; i < indexed.length; i++) {
+                if (next[i] < terminalIds[i].length && (lowest < 0 ||
+                  terminalIds[i][next[i]] <
+                  terminalIds[lowest][next[lowest]])) {
+                    lowest = i;
+                }
+            }
+            ids[merged] = terminalIds[lowest][next[lowest]++];
+        }
+        List<Communication> communications =
+            new ArrayList<Communication>(ids.length);
+        for (Communication communication : findCommunications(ids)) {
+            if (communication != null) {
+                communications.add(communication);
+            }
+        }
+        return Collections.unmodifiableCollection(communications);
+    }
+
+    /**
+     * Adds a communication to the shard of its sender.
+     *
+     * @param communication The communication
+     */
+    private void storeCommunication(Communication communication) {
+        shardOf(communication.getTerminalSender().getNumber())
+            .addCommunication(communication);
+    }
+
+    /**
+     * Indexes a communication as made in the shard of its sender, which then
+     * hands it off to the shard of its receiver to be indexed as received.
+     *
+     * @param communication The communication to index
+     */
+    private void indexCommunication(Communication communication) {
+        shardOf(communication.getTerminalSender().getNumber())
+            .addCommunicationMade(communication.getSenderId(),
+                communication.getId());
+        shardOf(communication.getTerminalReceiver().getNumber())
+            .addCommunicationReceived(communication.getReceiverId(),
+                communication.getId());
+    }
+
+    /**
+     * Adds the finished communication of a row of a store that is being
+     * restored to the shard of its sender, and indexes it.
+     *
+     * @param store The store
+     * @param row   The row
+     */
+    private void restoreCommunication(CommunicationStore store, int row) {
+        int id = store.getId(row);
+        int sender = store.getSender(row);
+        int receiver = store.getReceiver(row);
+        NetworkShard shard = shardOf(sender);
+        shard.addCommunication(store, row);
+        shard.addCommunicationMade(
+            _terminals.get(sender).getTerminalId(), id);
+        shardOf(receiver).addCommunicationReceived(
+            _terminals.get(receiver).getTerminalId(), id);
+    }
+
+    /**
+     * Restores the communications of a network that was serialized, in the
+     * order of their ids, from the rows of the finished ones and the ongoing
+     * ones, or from the communications of networks saved before the store
+     * existed.
+     *
+     * @param store   The finished communications
+     * @param pending The other communications, sorted by their id
+     */
+    private void restoreCommunications(CommunicationStore store,
+      TreeMap<Integer, Communication> pending) {
+        for (int row = 0; row < store.size(); row++) {
+            int id = store.getId(row);
+            while (!pending.isEmpty() && pending.firstKey() < id) {
+                restoreCommunication(pending.pollFirstEntry().getValue());
+            }
+            pending.remove(id);
+            restoreCommunication(store, row);
+        }
+        pending.values().forEach(this::restoreCommunication);
+    }
+
+    /**
+     * Saves the network to a serialized stream, merging the finished
+     * communications of the shards into one store and gathering the ongoing
+     * ones.
+     *
+     * @param out The stream to write the network to
+     * @throws IOException if there is an error writing the stream
+     */
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Map<Integer, Communication> ongoing =
+            new TreeMap<Integer, Communication>();
+        CommunicationStore.Merge merge = viewCommunications(ongoing);
+        _store = new CommunicationStore();
+        while (merge.next()) {
+            if (!merge.store().isOngoing(merge.row())) {
+                _store.add(merge.store(), merge.row());
+            }
+        }
+        _ongoingCommunications = ongoing;
+        try {
+            out.defaultWriteObject();
+        } finally {
+            _store = null;
+            _ongoingCommunications = null;
+        }
+    }
+
+    /**
+     * Restores the network from a serialized stream. The terminals are
+     * gathered from their owners, the clients are attached to the network
+     * again so that it keeps observing their balance, and the shards are
+     * rebuilt from them. The communications are then moved into the shards
+     * of their senders, in the order of their ids, whether they were saved
+     * as the rows of a store or, by networks saved before the store existed,
+     * as objects, and the communication indexes are rebuilt.
+     *
+     * @param in The stream to read the network from
+     * @throws IOException            if there is an error reading the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *                                cannot be found
+     */
+    @Serial
+    private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        _journal = new NetworkJournal();
+        _terminalLocks = new TerminalLocks();
+        _directory = new ShardDirectory();
+        _shards = newShards(_directory);
+        Collection<Client> clients = _clients.values();
+        _clients = new HashMap<String, Client>();
+        _terminals = new TerminalTable();
+        for (Client client : clients) {
+            _clients.put(ClientKeys.fold(client.getId()), client);
+            client.getTerminals().forEach(_terminals::put);
+        }
+        restoreBalances();
+        TreeMap<Integer, Communication> pending =
+            new TreeMap<Integer, Communication>();
+        if (_communications != null) {
+            pending.putAll(_communications);
+        }
+        if (_ongoingCommunications != null) {
+            pending.putAll(_ongoingCommunications);
+        }
+        restoreCommunications(
+            _store != null ? _store : new CommunicationStore(), pending);
+        _store = null;
+        _communications = null;
+        _ongoingCommunications = null;
+    }
+
+    /**
+     * Attaches the clients and terminals to the network again so that it
+     * keeps observing their balance, and recomputes the running totals, the
+     * debt indexes and the indexes of terminals of the shards from the
+     * balance and use of every client and terminal.
+     */
+    private void restoreBalances() {
+        for (NetworkShard shard : _shards) {
+            shard.clearBalances();
+        }
+        for (Client client : _clients.values()) {
+            client.setBalanceObserver(this);
+            shardOf(client).balanceUpdated(client, client.getPayments(),
+                client.getDebts());
+        }
+        for (Terminal terminal : _terminals) {
+            terminal.setTerminalObserver(this);
+            NetworkShard shard = shardOf(terminal.getNumber());
+            shard.setUnused(terminal, terminal.isUnused());
+            shard.terminalBalanceUpdated(terminal);
+        }
+    }
+
+    /**
+     * Finishes restoring a network whose clients, terminals and
+     * communications were restored one by one from a snapshot.
+     *
+     * @param nextCommunicationId The ID for the next communication created by
+     *                            the network
+     */
+    void restored(int nextCommunicationId) {
+        _nextCommunicationId = nextCommunicationId;
+        restoreBalances();
+    }
+
+    /**
+     * Peeks at the ID that the next communication created by the network will
+     * get, without using it.
+     *
+     * @return The next communication ID
+     */
+    int peekNextCommunicationId() {
+        return _nextCommunicationId;
+    }
+
+    /**
+     * Gets all the communications associated to the network, sorted by their
+     * key, turning the finished ones back into objects. The communications
+     * of every view are turned into objects in the order of its rows, which
+     * is much faster than going back and forth between the views, and are
+     * then merged in the order of the keys.
+     *
+     * @return The communications sorted by their key on a {@link List}
+     */
+    List<Communication> getCommunications() {
+        Map<Integer, Communication> ongoing =
+            new HashMap<Integer, Communication>();
+        CommunicationStore.Merge merge = viewCommunications(ongoing);
+        Communication[][] shards = new Communication[_shards.length][];
+        for (int shard = 0; shard < shards.length; shard++) {
+            CommunicationStore store = merge.store(shard);
+            shards[shard] = new Communication[store.size()];
+            for (int row = 0; row < shards[shard].length; row++) {
+                shards[shard][row] = getCommunication(store, row, ongoing);
+            }
+        }
+        List<Communication> communications =
+            new ArrayList<Communication>(merge.size());
+        while (merge.next()) {
+            communications.add(shards[merge.shard()][merge.row()]);
+        }
+        return communications;
+    }
+
+    /**
+     * Registers a communication restored from a snapshot on the network,
+     * without marking the network as changed.
+     *
+     * @param communication The restored communication
+     */
+    void restoreCommunication(Communication communication) {
+        storeCommunication(communication);
+        indexCommunication(communication);
+    }
+
+    /**
+     * Sets where the messages of the finished text communications are kept,
+     * moving the messages kept so far.
+     *
+     * @param storage Where the messages are kept
+     * @throws IOException if the file of mapped messages cannot be created
+     */
+    public void setMessageStorage(MessageStorage storage)
+      throws IOException {
+        for (NetworkShard shard : _shards) {
+            shard.moveMessages(MessageStore.create(storage));
+        }
+    }
+
+    /**
+     * Gets the journal that records the operations performed on the network
+     * since it was last saved.
+     *
+     * @return The journal of the network
+     */
+    public NetworkJournal getJournal() {
+        return _journal;
     }
 
     /**
@@ -450,19 +1303,6 @@ public class Network implements Serializable {
         setChanged(true);
     }
 
-    /**
-     * Checks if the entry has the expected number of fields.
-     *
-     * @throws UnknownEntryLengthException if the number of fields doesn't
-     *                                     match the expected value
-     */
-    private void assertEntryLength(String[] fields, int expectedSize)
-      throws UnknownEntryLengthException {
-        if (fields.length != expectedSize) {
-            throw new UnknownEntryLengthException(fields.length);
-        }
-    }
-
     /**
      * Checks if a new client is elicit for registeration, meaning that their key
      * must not already be in the network.
@@ -474,7 +1314,7 @@ public class Network implements Serializable {
      */
     private void assertNewClient(String id)
       throws DuplicateClientKeyException {
-        if (_clients.containsKey(id)) {
+        if (_clients.containsKey(ClientKeys.fold(id))) {
             throw new DuplicateClientKeyException(id);
         }
     }
@@ -492,15 +1332,25 @@ public class Network implements Serializable {
      */
     private void assertNewTerminal(String id)
       throws InvalidTerminalKeyException, DuplicateTerminalKeyException {
-        String validTerminalIdRegex = "^\\d{6}$";
-        if (!id.matches(validTerminalIdRegex)) {
+        if (!isValidTerminalKey(id)) {
             throw new InvalidTerminalKeyException(id);
         }
-        if (_terminals.containsKey(id)) {
+        if (findTerminal(id) != null) {
             throw new DuplicateTerminalKeyException(id);
         }
     }
 
+    /**
+     * Checks if a terminal key is exactly 6 characters long and only made up
+     * of the digits 0 through 9.
+     *
+     * @param id The terminal key to check
+     * @return true if the terminal key is valid, false otherwise
+     */
+    static boolean isValidTerminalKey(String id) {
+        return TerminalKeys.toNumber(id) >= 0;
+    }
+
     /**
      * Read plain text input file and create corresponding domain entities
      * (clients, terminals and terminal friends).
@@ -515,103 +1365,46 @@ public class Network implements Serializable {
      */
     void importFile(String filename) throws IOException,
       UnrecognizedEntryException {
-        try (BufferedReader reader = new BufferedReader(
-          new FileReader(filename))) {
-            String entry;
-            while ((entry = reader.readLine()) != null) {
-                setCurrentEntry(entry);
-                String[] fields = entry.split("\\|");
-                parseEntry(fields);
-            }
-        }
-    }
-
-    /**
-     * Parses an entry line from its fields, making it possible for the network
-     * to register it.
-     *
-     * @param fields Fields that were previously split in order to contain
-     *               information for an entry ready to be registered
-     * @throws UnrecognizedEntryException if the entry type is unknown by
-     *                                    the program
-     */
-    private void parseEntry(String[] fields) throws UnrecognizedEntryException {
-        try {
-            switch (fields[0]) {
-                case "CLIENT" -> parseClient(fields);
-                case "BASIC", "FANCY" -> parseTerminal(fields);
-                case "FRIENDS" -> parseTerminalFriends(fields);
-                default -> throw new UnknownEntryTypeException(fields[0]);
-            }
-        } catch (UnknownEntryTypeException e) {
-            throw new UnrecognizedEntryException(_currentEntry, e);
-        }
-    }
-
-    /**
-     * Parses and imports a client entry from plain text.
-     * <p>
-     * A correct client entry needs to have the following format:
-     * {@code CLIENT|id|name|taxId}
-     *
-     * @param fields The fields of a client entry that were previously split
-     * @throws UnrecognizedEntryException if the entry does not have the
-     *                                    correct fields
-     */
-    private void parseClient(String[] fields)
-      throws UnrecognizedEntryException {
-        try {
-            assertEntryLength(fields, 4);
-            registerClient(fields[1], fields[2], Integer.parseInt(fields[3]));
-        } catch (UnknownEntryLengthException | NumberFormatException |
-          DuplicateClientKeyException e) {
-            throw new UnrecognizedEntryException(_currentEntry, e);
-        }
+        importFile(filename, ImportMode.SEQUENTIAL);
     }
 
     /**
-     * Parses and imports a terminal entry from plain text.
-     * <p>
-     * A correct terminal entry needs to have the following format:
-     * {@code terminal-type|idTerminal|idClient|state}
+     * Read plain text input file and create corresponding domain entities
+     * (clients, terminals and terminal friends) in the given mode.
      *
-     * @param fields The fields of a terminal entry that were previously split
-     * @throws UnrecognizedEntryException if the entry does not have the
-     *                                    correct fields
+     * @param filename Name of the text input file
+     * @param mode     How the file is read and its entities are created
+     * @throws UnrecognizedEntryException if some entry (line) is not correct
+     * @throws IOException                if there was an IO error while
+     *                                    processing the text file.
      */
-    private void parseTerminal(String[] fields)
-      throws UnrecognizedEntryException {
-        try {
-            assertEntryLength(fields, 4);
-            Terminal registeredTerminal =
-                registerTerminal(fields[0], fields[1], fields[2]);
-            registeredTerminal.setStatus(fields[3]);
-        } catch (UnknownEntryLengthException | UnknownClientKeyException |
-          InvalidTerminalKeyException | DuplicateTerminalKeyException |
-          UnknownEntryTypeException | IllegalTerminalStatusException e) {
-            throw new UnrecognizedEntryException(_currentEntry, e);
+    void importFile(String filename, ImportMode mode) throws IOException,
+      UnrecognizedEntryException {
+        switch (mode) {
+            case SEQUENTIAL -> importEntries(filename);
+            case PARALLEL -> new ParallelImporter(this).importFile(filename);
+            case MAPPED -> new MappedImporter(this).importFile(filename);
         }
     }
 
     /**
-     * Parses and imports terminal friends from an entry in a plain text file.
-     * <p>
-     * A correct terminal friends entry needs to have the following format:
-     * {@code FRIENDS|idTerminal|idTerminal1,...,idTerminalN}
+     * Reads every entry of a plain text input file and registers it right
+     * away, in file order.
      *
-     * @param fields The fields of a terminal friends entry that were
-     *               previously split
-     * @throws UnrecognizedEntryException if the entry does not have the
-     *                                    correct fields
+     * @param filename Name of the text input file
+     * @throws UnrecognizedEntryException if some entry (line) is not correct
+     * @throws IOException                if there was an IO error while
+     *                                    processing the text file.
      */
-    private void parseTerminalFriends(String[] fields)
-      throws UnrecognizedEntryException {
-        try {
-            assertEntryLength(fields, 3);
-            String[] terminalFriendsIds = fields[2].split(",");
-            registerTerminalFriends(fields[1], terminalFriendsIds);
-        } catch (UnknownEntryLengthException | UnknownTerminalKeyException e) {
-            throw new UnrecognizedEntryException(_currentEntry, e);
+    private void importEntries(String filename) throws IOException,
+      UnrecognizedEntryException {
+        EntryTokenizer fields = new EntryTokenizer();
+        try (BufferedReader reader = new BufferedReader(
+          new FileReader(filename))) {
+            String entry;
+            while ((entry = reader.readLine()) != null) {
+                ImportEntry.parse(entry, fields).register(this);
+            }
         }
     }
 
@@ -630,7 +1423,10 @@ public class Network implements Serializable {
       throws DuplicateClientKeyException {
         assertNewClient(id);
         Client client = new Client(id, name, taxId);
-        _clients.put(id, client);
+        client.setBalanceObserver(this);
+        _clients.put(ClientKeys.fold(id), client);
+        _sortedClients = null;
+        _journal.recordClientRegistration(id, name, taxId);
         changed();
         return client;
     }
@@ -666,7 +1462,10 @@ public class Network implements Serializable {
             default -> throw new UnknownEntryTypeException(type);
         };
 
-        _terminals.put(terminalId, terminal);
+        terminal.setTerminalObserver(this);
+        _terminals.put(terminal);
+        shardOf(terminal.getNumber()).setUnused(terminal, true);
+        _journal.recordTerminalRegistration(type, terminalId, clientId);
         changed();
         return terminal;
     }
@@ -683,7 +1482,7 @@ public class Network implements Serializable {
      *                                     is not connected to a terminal on
      *                                     the network
      */
-    private void registerTerminalFriends(String terminalId,
+    void registerTerminalFriends(String terminalId,
       String[] terminalFriendsIds) throws UnknownTerminalKeyException {
         Terminal terminal = getTerminal(terminalId);
         for (String terminalFriendId : terminalFriendsIds) {
@@ -702,9 +1501,250 @@ public class Network implements Serializable {
      * @param communication New communication started by a terminal on the
      *                      network.
      */
-    public void registerCommunication(Communication communication) {
-        _communications.put(communication.getId(), communication);
+    public void registerCommunication(
+      Communication communication) {
+        storeCommunication(communication);
+        indexCommunication(communication);
+        changed();
+    }
+
+    /**
+     * Fills in the row of an interactive communication that has just
+     * finished in the store of the shard of its sender, which stops keeping
+     * it as an object.
+     *
+     * @param communication The finished communication
+     */
+    public void archiveCommunication(Communication communication) {
+        shardOf(communication.getTerminalSender().getNumber())
+            .archiveCommunication(communication);
         changed();
     }
 
+    /**
+     * Marks a finished communication as paid by the terminal that made it,
+     * locking only the shard of the terminal.
+     *
+     * @param id       The key of the communication
+     * @param terminal The terminal paying for the communication
+     * @return The price of the communication, in cents
+     * @throws InvalidCommunicationException if the communication is not
+     *                                       present in the network, is
+     *                                       ongoing, was already paid or was
+     *                                       not made by the terminal
+     */
+    public long payCommunication(int id, Terminal terminal)
+      throws InvalidCommunicationException {
+        return shardOf(terminal.getNumber()).payCommunication(id,
+            terminal.getNumber());
+    }
+
+    /**
+     * Sends a text message between two terminals, locking both of them, so
+     * that it can be called from many threads at once.
+     *
+     * @param senderId   The key of the sending terminal
+     * @param receiverId The key of the receiving terminal
+     * @param message    The message to send
+     * @throws UnknownTerminalKeyException     if any of the terminal keys is
+     *                                         not present in the network
+     * @throws UnreachableOffTerminalException if the receiver is off
+     * @see Terminal#sendSMS(String, Network, String)
+     */
+    public void sendSMS(String senderId, String receiverId, String message)
+      throws UnknownTerminalKeyException, UnreachableOffTerminalException {
+        Terminal sender = getTerminal(senderId);
+        boolean serial = isTrafficSerial();
+        _terminalLocks.lock(senderId, receiverId, serial);
+        try {
+            synchronized (sender.getOwner()) {
+                sender.sendSMS(receiverId, this, message);
+            }
+        } finally {
+            _terminalLocks.unlock(senderId, receiverId, serial);
+        }
+    }
+
+    /**
+     * Starts a voice call between two terminals, locking both of them, so
+     * that it can be called from many threads at once.
+     *
+     * @param senderId   The key of the calling terminal
+     * @param receiverId The key of the called terminal
+     * @throws UnknownTerminalKeyException        if any of the terminal keys
+     *                                            is not present in the
+     *                                            network
+     * @throws UnreachableOffTerminalException    if the receiver is off
+     * @throws UnreachableBusyTerminalException   if the receiver is busy
+     * @throws UnreachableSilentTerminalException if the receiver is silent
+     * @throws InvalidCommunicationException      if the terminal calls itself
+     * @see Terminal#makeVoiceCall(String, Network)
+     */
+    public void makeVoiceCall(String senderId, String receiverId)
+      throws UnknownTerminalKeyException, UnreachableOffTerminalException,
+      UnreachableBusyTerminalException, UnreachableSilentTerminalException,
+      InvalidCommunicationException {
+        Terminal sender = getTerminal(senderId);
+        boolean serial = isTrafficSerial();
+        _terminalLocks.lock(senderId, receiverId, serial);
+        try {
+            synchronized (sender.getOwner()) {
+                sender.makeVoiceCall(receiverId, this);
+            }
+        } finally {
+            _terminalLocks.unlock(senderId, receiverId, serial);
+        }
+    }
+
+    /**
+     * Starts a video call between two terminals, locking both of them, so
+     * that it can be called from many threads at once.
+     *
+     * @param senderId   The key of the calling terminal
+     * @param receiverId The key of the called terminal
+     * @throws UnsupportedCommunicationAtOriginException      if the caller
+     *                                                        can't make video
+     *                                                        calls
+     * @throws UnsupportedCommunicationAtDestinationException if the receiver
+     *                                                        can't take video
+     *                                                        calls
+     * @throws UnknownTerminalKeyException        if any of the terminal keys
+     *                                            is not present in the
+     *                                            network
+     * @throws UnreachableOffTerminalException    if the receiver is off
+     * @throws UnreachableBusyTerminalException   if the receiver is busy
+     * @throws UnreachableSilentTerminalException if the receiver is silent
+     * @throws InvalidCommunicationException      if the terminal calls itself
+     * @see Terminal#makeVideoCall(String, Network)
+     */
+    public void makeVideoCall(String senderId, String receiverId)
+      throws UnsupportedCommunicationAtOriginException,
+      UnsupportedCommunicationAtDestinationException,
+      UnknownTerminalKeyException, UnreachableOffTerminalException,
+      UnreachableBusyTerminalException, UnreachableSilentTerminalException,
+      InvalidCommunicationException {
+        Terminal sender = getTerminal(senderId);
+        boolean serial = isTrafficSerial();
+        _terminalLocks.lock(senderId, receiverId, serial);
+        try {
+            synchronized (sender.getOwner()) {
+                sender.makeVideoCall(receiverId, this);
+            }
+        } finally {
+            _terminalLocks.unlock(senderId, receiverId, serial);
+        }
+    }
+
+    /**
+     * Ends the ongoing communication of a terminal, locking both of its
+     * terminals, so that it can be called from many threads at once. The
+     * other terminal is looked up before it is locked, so it is checked
+     * again once both are locked, in case the communication ended meanwhile.
+     *
+     * @param terminalId The key of the terminal that ends the communication
+     * @param duration   The duration of the communication
+     * @return The price of the communication, in cents, or 0 if the terminal
+     *         had no communication of its own to end
+     * @throws UnknownTerminalKeyException if the terminal key is not present
+     *                                     in the network
+     * @see Terminal#endOngoingCommunication(int, Network)
+     */
+    public long endOngoingCommunication(String terminalId, int duration)
+      throws UnknownTerminalKeyException {
+        Terminal terminal = getTerminal(terminalId);
+        while (true) {
+            String receiverId = getOngoingReceiverId(terminal);
+            boolean serial = isTrafficSerial();
+            _terminalLocks.lock(terminalId, receiverId, serial);
+            try {
+                if (receiverId.equals(getOngoingReceiverId(terminal))) {
+                    synchronized (terminal.getOwner()) {
+                        return terminal.endOngoingCommunication(duration,
+                            this);
+                    }
+                }
+            } finally {
+                _terminalLocks.unlock(terminalId, receiverId, serial);
+            }
+        }
+    }
+
+    /**
+     * Makes every communication of a batch in one pass, in the order they
+     * were added, as if each was made through
+     * {@link #sendSMS(String, String, String)},
+     * {@link #makeVoiceCall(String, String)} or
+     * {@link #makeVideoCall(String, String)} and every call was then ended by
+     * its caller through {@link #endOngoingCommunication(String, int)}. A
+     * communication that can't be made gets its outcome instead of an
+     * exception, and the batch goes on with the next one.
+     *
+     * @param batch The communications to make
+     * @return The outcome of every communication of the batch, in the order
+     *         they were added
+     * @see CommunicationBatch
+     */
+    public CommunicationOutcome[] makeCommunications(
+      CommunicationBatch batch) {
+        CommunicationOutcome[] outcomes =
+            new CommunicationOutcome[batch.size()];
+        for (int i = 0; i < outcomes.length; i++) {
+            String senderId = batch.getSenderId(i);
+            String receiverId = batch.getReceiverId(i);
+            Terminal sender = findTerminal(senderId);
+            if (sender == null) {
+                outcomes[i] = CommunicationOutcome.UNKNOWN_SENDER;
+                continue;
+            }
+            boolean serial = isTrafficSerial();
+            _terminalLocks.lock(senderId, receiverId, serial);
+            try {
+                synchronized (sender.getOwner()) {
+                    outcomes[i] = switch (batch.getType(i)) {
+                        case CommunicationBatch.TEXT -> sender.trySendSMS(
+                            receiverId, this, batch.getMessage(i));
+                        case CommunicationBatch.VIDEO ->
+                            sender.tryMakeVideoCall(receiverId, this);
+                        default -> sender.tryMakeVoiceCall(receiverId, this);
+                    };
+                    if (batch.getType(i) != CommunicationBatch.TEXT &&
+                      outcomes[i] == CommunicationOutcome.MADE) {
+                        sender.endOngoingCommunication(batch.getDuration(i),
+                            this);
+                    }
+                }
+            } finally {
+                _terminalLocks.unlock(senderId, receiverId, serial);
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Gets the key of the receiver of the ongoing communication of a
+     * terminal.
+     *
+     * @param terminal The terminal
+     * @return The key of the receiver, or of the terminal itself if it has no
+     *         ongoing communication
+     */
+    private static String getOngoingReceiverId(Terminal terminal) {
+        try {
+            return terminal.getOngoingCommunication().getReceiverId();
+        } catch (InvalidCommunicationException e) {
+            return terminal.getTerminalId();
+        }
+    }
+
+    /**
+     * Checks whether communications must be made one at a time. The journal
+     * is replayed in the order its operations were recorded, which must then
+     * be the order in which the communications got their keys.
+     *
+     * @return true if communications must not interleave
+     */
+    private boolean isTrafficSerial() {
+        return _journal.isRecording();
+    }
+
 }
@@ -0,0 +1,723 @@
+package prr;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import prr.exceptions.DuplicateClientKeyException;
+import prr.exceptions.DuplicateTerminalKeyException;
+import prr.exceptions.IllegalTerminalStatusException;
+import prr.exceptions.InvalidCommunicationException;
+import prr.exceptions.InvalidFriendException;
+import prr.exceptions.InvalidTerminalKeyException;
+import prr.exceptions.NotificationsAlreadyToggledException;
+import prr.exceptions.UnknownClientKeyException;
+import prr.exceptions.UnknownEntryTypeException;
+import prr.exceptions.UnknownTerminalKeyException;
+import prr.exceptions.UnreachableBusyTerminalException;
+import prr.util.DurableFiles;
+
+/**
+ * Journal of the operations performed on a network since it was last saved.
+ * <p>
+ * While the journal is recording, every operation that may change the network
+ * is recorded once it was performed, with the arguments it was given. An
+ * operation that is rejected with an exception leaves the network as it was,
+ * so it isn't recorded, but a communication that is refused without one is,
+ * since it may still change the network (such as a client asking to be
+ * notified by an unreachable terminal). Every recorded operation therefore
+ * succeeds again when it is performed on the same network, and one that
+ * doesn't means the journal is corrupt. The recorded operations are kept in
+ * memory until they are flushed to a journal file, which extends the
+ * snapshot it was created for.
+ * <p>
+ * A journal file starts with a magic number, a format version and the length
+ * and CRC-32 checksum of the snapshot it extends, followed by the batches of
+ * operations of every flush. Every batch starts with its length and CRC-32
+ * checksum, so that a batch torn by a crash is detected and left out.
+ */
+public class NetworkJournal {
+
+    /** Magic number that starts every journal file ("PRRJ"). */
+    private static final int MAGIC = 0x5052524A;
+
+    /** Version of the journal format. */
+    private static final int VERSION = 1;
+
+    /** Length of the header of a journal file. */
+    private static final int HEADER_LENGTH =
+        Integer.BYTES + Short.BYTES + Long.BYTES + Integer.BYTES;
+
+    /** Length of the header of a batch of operations. */
+    private static final int BATCH_HEADER_LENGTH = 2 * Integer.BYTES;
+
+    private static final int REGISTER_CLIENT = 1;
+    private static final int REGISTER_TERMINAL = 2;
+    private static final int ENABLE_NOTIFICATIONS = 3;
+    private static final int DISABLE_NOTIFICATIONS = 4;
+    private static final int READ_NOTIFICATIONS = 5;
+    private static final int ADD_FRIEND = 6;
+    private static final int REMOVE_FRIEND = 7;
+    private static final int SET_ON_IDLE = 8;
+    private static final int SET_ON_SILENT = 9;
+    private static final int TURN_OFF = 10;
+    private static final int SEND_SMS = 11;
+    private static final int MAKE_VOICE_CALL = 12;
+    private static final int MAKE_VIDEO_CALL = 13;
+    private static final int END_COMMUNICATION = 14;
+    private static final int PERFORM_PAYMENT = 15;
+
+    /** Marks a snapshot that includes the journal up to some point. */
+    private static final int CHECKPOINT = 16;
+
+    /** Length of a checkpoint mark. */
+    private static final int CHECKPOINT_LENGTH =
+        1 + Long.BYTES + Integer.BYTES + Long.BYTES;
+
+    /** The operations recorded since the journal was last flushed. */
+    private final ByteArrayOutputStream _operations;
+
+    /** Is the journal recording every operation performed on the network? */
+    private boolean _recording;
+
+    /** Number of operations recorded since the journal was last flushed. */
+    private int _pendingOperations;
+
+    /** Default constructor, for a journal that isn't recording. */
+    NetworkJournal() {
+        _operations = new ByteArrayOutputStream();
+        _recording = false;
+        _pendingOperations = 0;
+    }
+
+    /**
+     * Starts recording the operations performed on the network, discarding
+     * the ones recorded so far.
+     */
+    void start() {
+        _operations.reset();
+        _pendingOperations = 0;
+        _recording = true;
+    }
+
+    /**
+     * Stops recording the operations performed on the network, meaning that
+     * the journal no longer accounts for every change since the network was
+     * last saved.
+     */
+    void stop() {
+        _operations.reset();
+        _pendingOperations = 0;
+        _recording = false;
+    }
+
+    /**
+     * Indicates whether the journal is recording every operation performed on
+     * the network.
+     *
+     * @return true if the journal is recording
+     */
+    boolean isRecording() {
+        return _recording;
+    }
+
+    /**
+     * Gets the number of operations recorded since the journal was last
+     * flushed.
+     *
+     * @return The number of pending operations
+     */
+    int getPendingOperations() {
+        return _pendingOperations;
+    }
+
+    /**
+     * Writes the operations recorded since the last flush at the end of a
+     * journal file, and forces them to the storage device. The journal file
+     * is created if it doesn't extend the current snapshot yet, and anything
+     * after its last complete batch is dropped.
+     *
+     * @param file             The journal file
+     * @param length           The length of the journal file up to its last
+     *                         complete batch, or -1 if it must be created
+     * @param snapshotLength   The length of the snapshot the journal extends
+     * @param snapshotChecksum The checksum of the snapshot the journal extends
+     * @return The new length of the journal file
+     * @throws IOException if there is an error writing the journal file
+     */
+    long flush(Path file, long length, long snapshotLength,
+      int snapshotChecksum) throws IOException {
+        if (length >= 0 && _operations.size() == 0) {
+            return length;
+        }
+
+        byte[] header = null;
+        if (length < 0) {
+            header = header(snapshotLength, snapshotChecksum);
+            length = 0;
+        }
+        length = append(file, length, header, _operations.toByteArray());
+        _operations.reset();
+        _pendingOperations = 0;
+        return length;
+    }
+
+    /**
+     * Checks if a journal file has any batch.
+     *
+     * @param length The length of the journal file up to its last complete
+     *               batch, or -1 if there is none
+     * @return true if the journal file has at least one batch
+     */
+    static boolean hasOperations(long length) {
+        return length > HEADER_LENGTH;
+    }
+
+    /**
+     * Marks, at the end of a journal file, that a snapshot includes every
+     * operation of the journal up to some point, so that the journal can
+     * still be performed on that snapshot before it is rebased.
+     *
+     * @param file             The journal file
+     * @param length           The length of the journal file up to its last
+     *                         complete batch
+     * @param snapshotLength   The length of the snapshot
+     * @param snapshotChecksum The checksum of the snapshot
+     * @param included         The length of the journal file the snapshot
+     *                         includes
+     * @return The new length of the journal file
+     * @throws IOException if there is an error writing the journal file
+     */
+    static long mark(Path file, long length, long snapshotLength,
+      int snapshotChecksum, long included) throws IOException {
+        byte[] mark = ByteBuffer.allocate(CHECKPOINT_LENGTH)
+            .put((byte) CHECKPOINT)
+            .putLong(snapshotLength)
+            .putInt(snapshotChecksum)
+            .putLong(included)
+            .array();
+        return append(file, length, null, mark);
+    }
+
+    /**
+     * Rewrites a journal file so that it extends a snapshot that includes
+     * it up to some point, keeping only the batches after that point and
+     * dropping the mark of the checkpoint that follows them.
+     *
+     * @param file             The journal file
+     * @param length           The length of the journal file up to its last
+     *                         batch before the mark of the checkpoint
+     * @param snapshotLength   The length of the snapshot
+     * @param snapshotChecksum The checksum of the snapshot
+     * @param included         The length of the journal file the snapshot
+     *                         includes
+     * @return The new length of the journal file
+     * @throws IOException if there is an error writing the journal file
+     */
+    static long rebase(Path file, long length, long snapshotLength,
+      int snapshotChecksum, long included) throws IOException {
+        byte[] batches = new byte[(int) (length - included)];
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer buffer = ByteBuffer.wrap(batches);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, included + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+        }
+
+        Path rebased = Path.of(file + ".tmp");
+        Files.deleteIfExists(rebased);
+        long rebasedLength = append(rebased, 0,
+            header(snapshotLength, snapshotChecksum), null);
+        try (FileChannel channel = FileChannel.open(rebased,
+          StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(batches);
+            while (buffer.hasRemaining()) {
+                rebasedLength += channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        DurableFiles.replace(rebased, file);
+        return rebasedLength;
+    }
+
+    /**
+     * Builds the header of a journal file.
+     *
+     * @param snapshotLength   The length of the snapshot the journal extends
+     * @param snapshotChecksum The checksum of the snapshot the journal extends
+     * @return The header
+     */
+    private static byte[] header(long snapshotLength, int snapshotChecksum) {
+        return ByteBuffer.allocate(HEADER_LENGTH)
+            .putInt(MAGIC)
+            .putShort((short) VERSION)
+            .putLong(snapshotLength)
+            .putInt(snapshotChecksum)
+            .array();
+    }
+
+    /**
+     * Writes a batch of operations at some point of a journal file, dropping
+     * anything after it, and forces it to the storage device.
+     *
+     * @param file       The journal file
+     * @param length     Where to write the batch
+     * @param header     The header of the journal file to write before the
+     *                   batch, if any
+     * @param operations The operations of the batch, if any
+     * @return The new length of the journal file
+     * @throws IOException if there is an error writing the journal file
+     */
+    private static long append(Path file, long length, byte[] header,
+      byte[] operations) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH +
+            BATCH_HEADER_LENGTH + (operations == null ? 0 : operations.length));
+        if (header != null) {
+            buffer.put(header);
+        }
+        if (operations != null && operations.length > 0) {
+            CRC32 checksum = new CRC32();
+            checksum.update(operations);
+            buffer.putInt(operations.length)
+                .putInt((int) checksum.getValue())
+                .put(operations);
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            channel.position(length);
+            while (buffer.hasRemaining()) {
+                length += channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        return length;
+    }
+
+    /**
+     * Performs the operations of a journal file on the network restored from
+     * the snapshot it extends, in the order they were recorded. When the
+     * snapshot was checkpointed from the journal, only the operations after
+     * the checkpoint are performed. Journal files that don't extend the given
+     * snapshot are ignored, as is anything after their last complete batch.
+     *
+     * @param file             The journal file
+     * @param limit            How much of the journal file to read at most
+     * @param snapshotLength   The length of the snapshot the network was
+     *                         restored from
+     * @param snapshotChecksum The checksum of the snapshot the network was
+     *                         restored from
+     * @param network          The restored network
+     * @return The length of the journal file up to its last complete batch,
+     *         or -1 if there is no journal file extending the snapshot
+     * @throws IOException if there is an error reading the journal file or it
+     *                     has an unknown operation
+     */
+    static long replay(Path file, long limit, long snapshotLength,
+      int snapshotChecksum, Network network) throws IOException {
+        List<Long> offsets = new ArrayList<Long>();
+        List<byte[]> batches = new ArrayList<byte[]>();
+        boolean extended;
+        long length = HEADER_LENGTH;
+
+        try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) {
+                return -1;
+            }
+            long extendedLength = in.readLong();
+            int extendedChecksum = in.readInt();
+            extended = extendedLength == snapshotLength &&
+                extendedChecksum == snapshotChecksum;
+
+            long fileLength = Math.min(limit, Files.size(file));
+            CRC32 checksum = new CRC32();
+            while (length + BATCH_HEADER_LENGTH <= fileLength) {
+                int batchLength = in.readInt();
+                int batchChecksum = in.readInt();
+                if (batchLength < 0 || length + BATCH_HEADER_LENGTH +
+                  batchLength > fileLength) {
+                    break;
+                }
+                byte[] batch = new byte[batchLength];
+                in.readFully(batch);
+                checksum.reset();
+                checksum.update(batch);
+                if ((int) checksum.getValue() != batchChecksum) {
+                    break;
+                }
+                offsets.add(length);
+                batches.add(batch);
+                length += BATCH_HEADER_LENGTH + batchLength;
+            }
+        } catch (NoSuchFileException e) {
+            return -1;
+        } catch (EOFException e) {
+            // the header itself was torn
+            return -1;
+        }
+
+        long included = extended ? 0 : -1;
+        for (int i = batches.size() - 1; included < 0 && i >= 0; i--) {
+            included = includedBy(batches.get(i), snapshotLength,
+                snapshotChecksum);
+        }
+        if (included < 0) {
+            return -1;
+        }
+        for (int i = 0; i < batches.size(); i++) {
+            if (offsets.get(i) >= included) {
+                replayBatch(batches.get(i), network);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Checks if a batch marks a checkpoint into the given snapshot.
+     *
+     * @param batch            The batch
+     * @param snapshotLength   The length of the snapshot
+     * @param snapshotChecksum The checksum of the snapshot
+     * @return The length of the journal file the snapshot includes, or -1 if
+     *         the batch isn't a checkpoint into the snapshot
+     */
+    private static long includedBy(byte[] batch, long snapshotLength,
+      int snapshotChecksum) {
+        if (batch.length != CHECKPOINT_LENGTH || batch[0] != CHECKPOINT) {
+            return -1;
+        }
+        ByteBuffer mark = ByteBuffer.wrap(batch, 1, CHECKPOINT_LENGTH - 1);
+        if (mark.getLong() != snapshotLength ||
+          mark.getInt() != snapshotChecksum) {
+            return -1;
+        }
+        return mark.getLong();
+    }
+
+    /**
+     * Performs the operations of a batch on a network, in the order they were
+     * recorded. Only operations that succeeded were recorded, so an operation
+     * that fails means the journal doesn't extend the network.
+     *
+     * @param batch   The batch
+     * @param network The network
+     * @throws IOException if the batch is truncated, has an unknown operation
+     *                     or has an operation that fails
+     */
+    private static void replayBatch(byte[] batch, Network network)
+      throws IOException {
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(batch));
+        while (in.available() > 0) {
+            int operation = in.readUnsignedByte();
+            if (operation == CHECKPOINT) {
+                in.skipNBytes(CHECKPOINT_LENGTH - 1);
+                continue;
+            }
+            String id = NetworkSnapshot.readString(in);
+            try {
+                replayOperation(operation, id, in, network);
+            } catch (DuplicateClientKeyException
+              | DuplicateTerminalKeyException
+              | IllegalTerminalStatusException
+              | InvalidCommunicationException
+              | InvalidFriendException
+              | InvalidTerminalKeyException
+              | NotificationsAlreadyToggledException
+              | UnknownClientKeyException
+              | UnknownEntryTypeException
+              | UnknownTerminalKeyException
+              | UnreachableBusyTerminalException
+              | RuntimeException e) {
+                throw new IOException("Operation " + operation + " on " + id +
+                    " failed when replaying the journal", e);
+            }
+        }
+    }
+
+    /**
+     * Reads the arguments of an operation and performs it on a network.
+     *
+     * @param operation The operation
+     * @param id        The key of the client or terminal it was performed on
+     * @param in        The stream to read its other arguments from
+     * @param network   The network
+     * @throws IOException if the arguments are truncated or the operation is
+     *                     unknown
+     */
+    private static void replayOperation(int operation, String id,
+      DataInputStream in, Network network) throws IOException,
+      DuplicateClientKeyException, DuplicateTerminalKeyException,
+      IllegalTerminalStatusException, InvalidCommunicationException,
+      InvalidFriendException, InvalidTerminalKeyException,
+      NotificationsAlreadyToggledException, UnknownClientKeyException,
+      UnknownEntryTypeException, UnknownTerminalKeyException,
+      UnreachableBusyTerminalException {
+        switch (operation) {
+            case REGISTER_CLIENT -> {
+                String name = NetworkSnapshot.readString(in);
+                int taxId = NetworkSnapshot.readVarInt(in);
+                network.registerClient(id, name, taxId);
+            }
+            case REGISTER_TERMINAL -> {
+                String type = NetworkSnapshot.readString(in);
+                String clientId = NetworkSnapshot.readString(in);
+                network.registerTerminal(type, id, clientId);
+            }
+            case ENABLE_NOTIFICATIONS -> network.enableClientNotifications(id);
+            case DISABLE_NOTIFICATIONS ->
+                network.disableClientNotifications(id);
+            case READ_NOTIFICATIONS -> network.getClientNotifications(id);
+            case ADD_FRIEND -> {
+                String friendId = NetworkSnapshot.readString(in);
+                network.getTerminal(id).addFriend(friendId, network);
+            }
+            case REMOVE_FRIEND -> {
+                String friendId = NetworkSnapshot.readString(in);
+                network.getTerminal(id).removeFriend(friendId, network);
+            }
+            case SET_ON_IDLE -> network.getTerminal(id).setOnIdle(network);
+            case SET_ON_SILENT -> network.getTerminal(id).setOnSilent(network);
+            case TURN_OFF -> network.getTerminal(id).turnOff(network);
+            case SEND_SMS -> {
+                String receiverId = NetworkSnapshot.readString(in);
+                String message = NetworkSnapshot.readString(in);
+                network.getTerminal(id).trySendSMS(receiverId, network,
+                    message);
+            }
+            case MAKE_VOICE_CALL -> {
+                String receiverId = NetworkSnapshot.readString(in);
+                network.getTerminal(id).tryMakeVoiceCall(receiverId, network);
+            }
+            case MAKE_VIDEO_CALL -> {
+                String receiverId = NetworkSnapshot.readString(in);
+                network.getTerminal(id).tryMakeVideoCall(receiverId, network);
+            }
+            case END_COMMUNICATION -> {
+                int duration = NetworkSnapshot.readVarInt(in);
+                network.getTerminal(id).endOngoingCommunication(duration,
+                    network);
+            }
+            case PERFORM_PAYMENT -> {
+                int communicationId = NetworkSnapshot.readVarInt(in);
+                network.getTerminal(id).performPayment(communicationId,
+                    network);
+            }
+            default -> throw new IOException(
+                "Unknown operation in journal: " + operation);
+        }
+    }
+
+    /**
+     * Records an integer in 7-bit groups, least significant first.
+     *
+     * @param value The integer
+     */
+    private void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            _operations.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        _operations.write(value);
+    }
+
+    /**
+     * Records a string as its length followed by its UTF-8 bytes.
+     *
+     * @param value The string
+     */
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        _operations.writeBytes(bytes);
+    }
+
+    /**
+     * Records the start of an operation.
+     *
+     * @param operation The operation
+     * @param id        The key of the client or terminal it is performed on
+     */
+    private void record(int operation, String id) {
+        _operations.write(operation);
+        writeString(id);
+        _pendingOperations++;
+    }
+
+    /**
+     * Records the registration of a client.
+     *
+     * @param id    The key of the client
+     * @param name  The name of the client
+     * @param taxId The tax id of the client
+     */
+    public void recordClientRegistration(String id, String name, int taxId) {
+        if (_recording) {
+            record(REGISTER_CLIENT, id);
+            writeString(name);
+            writeVarInt(taxId);
+        }
+    }
+
+    /**
+     * Records the registration of a terminal.
+     *
+     * @param type       The type of the terminal
+     * @param terminalId The key of the terminal
+     * @param clientId   The key of the client that owns the terminal
+     */
+    public void recordTerminalRegistration(String type, String terminalId,
+      String clientId) {
+        if (_recording) {
+            record(REGISTER_TERMINAL, terminalId);
+            writeString(type);
+            writeString(clientId);
+        }
+    }
+
+    /**
+     * Records that a client turned its notifications on or off.
+     *
+     * @param clientId The key of the client
+     * @param enabled  true if the notifications were turned on
+     */
+    public void recordNotificationsToggle(String clientId, boolean enabled) {
+        if (_recording) {
+            record(enabled ? ENABLE_NOTIFICATIONS : DISABLE_NOTIFICATIONS,
+                clientId);
+        }
+    }
+
+    /**
+     * Records that a client read its notifications.
+     *
+     * @param clientId The key of the client
+     */
+    public void recordNotificationsReading(String clientId) {
+        if (_recording) {
+            record(READ_NOTIFICATIONS, clientId);
+        }
+    }
+
+    /**
+     * Records that a terminal added a friend.
+     *
+     * @param terminalId       The key of the terminal
+     * @param terminalFriendId The key of the friend
+     */
+    public void recordFriendAddition(String terminalId,
+      String terminalFriendId) {
+        if (_recording) {
+            record(ADD_FRIEND, terminalId);
+            writeString(terminalFriendId);
+        }
+    }
+
+    /**
+     * Records that a terminal removed a friend.
+     *
+     * @param terminalId       The key of the terminal
+     * @param terminalFriendId The key of the friend
+     */
+    public void recordFriendRemoval(String terminalId,
+      String terminalFriendId) {
+        if (_recording) {
+            record(REMOVE_FRIEND, terminalId);
+            writeString(terminalFriendId);
+        }
+    }
+
+    /**
+     * Records that a terminal changed its status.
+     *
+     * @param terminalId The key of the terminal
+     * @param statusType The new status: IDLE, SILENCE or OFF
+     */
+    public void recordStatusChange(String terminalId, String statusType) {
+        if (_recording) {
+            record(switch (statusType) {
+                case "IDLE" -> SET_ON_IDLE;
+                case "SILENCE" -> SET_ON_SILENT;
+                default -> TURN_OFF;
+            }, terminalId);
+        }
+    }
+
+    /**
+     * Records that a terminal tried to send a text communication.
+     *
+     * @param terminalId         The key of the sender
+     * @param terminalReceiverId The key of the receiver
+     * @param message            The message
+     */
+    public void recordTextCommunication(String terminalId,
+      String terminalReceiverId, String message) {
+        if (_recording) {
+            record(SEND_SMS, terminalId);
+            writeString(terminalReceiverId);
+            writeString(message);
+        }
+    }
+
+    /**
+     * Records that a terminal tried to start an interactive communication.
+     *
+     * @param type               The type of the communication: VOICE or
+     *                           VIDEO
+     * @param terminalId         The key of the sender
+     * @param terminalReceiverId The key of the receiver
+     */
+    public void recordInteractiveCommunication(String type, String terminalId,
+      String terminalReceiverId) {
+        if (_recording) {
+            record(type.equals("VIDEO") ? MAKE_VIDEO_CALL : MAKE_VOICE_CALL,
+                terminalId);
+            writeString(terminalReceiverId);
+        }
+    }
+
+    /**
+     * Records that a terminal tried to end its ongoing communication.
+     *
+     * @param terminalId The key of the terminal
+     * @param duration   The duration of the communication
+     */
+    public void recordCommunicationEnd(String terminalId, int duration) {
+        if (_recording) {
+            record(END_COMMUNICATION, terminalId);
+            writeVarInt(duration);
+        }
+    }
+
+    /**
+     * Records that a terminal paid a communication.
+     *
+     * @param terminalId      The key of the terminal
+     * @param communicationId The id of the communication
+     */
+    public void recordPayment(String terminalId, int communicationId) {
+        if (_recording) {
+            record(PERFORM_PAYMENT, terminalId);
+            writeVarInt(communicationId);
+        }
+    }
+
+}
@@ -1,14 +1,22 @@
 package prr;
 
-import java.io.ObjectOutputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
+import prr.util.DurableFiles;
 import prr.exceptions.ImportFileException;
 import prr.exceptions.MissingFileAssociationException;
 import prr.exceptions.UnavailableFileException;
@@ -16,6 +24,13 @@ import prr.exceptions.UnrecognizedEntryException;
 
 /**
  * Manage access to network and implement load/save operations.
+ * <p>
+ * Files are never rewritten in place: a new snapshot is written to a
+ * temporary file, forced to the storage device and then renamed over the
+ * previous one, so a crash while saving leaves the previous snapshot intact.
+ * Checkpoints are taken by a background thread, so every operation on the
+ * files is done under the lock of the manager, but the network itself is only
+ * ever used by the thread performing its operations.
  */
 public class NetworkManager {
 
@@ -25,36 +40,334 @@ public class NetworkManager {
     /** The name of the current file storing the network. */
     private String _filename;
 
+    /** Are changes saved to a journal instead of rewriting the whole file? */
+    private boolean _journaling;
+
+    /** The length of the snapshot in the current file. */
+    private long _snapshotLength;
+
+    /** The CRC-32 checksum of the snapshot in the current file. */
+    private int _snapshotChecksum;
+
+    /**
+     * The length of the journal extending the snapshot in the current file, or
+     * -1 if there is none.
+     */
+    private long _journalLength;
+
+    /**
+     * Changes whenever the current file is replaced other than by a
+     * checkpoint, so that a checkpoint taken meanwhile is dropped.
+     */
+    private int _generation;
+
+    /** Where the messages of the text communications are kept. */
+    private MessageStorage _messageStorage;
+
+    /** Takes checkpoints of the network in the background, if enabled. */
+    private Checkpointer _checkpointer;
+
+    /** Saved operations after which a checkpoint is taken, or 0 if none. */
+    private int _checkpointChanges;
+
+    /** Operations saved to the journal since the last checkpoint. */
+    private int _savedOperations;
+
+    /** Number of previous snapshots kept by checkpoints. */
+    private int _checkpointBackups;
+
     /** Default constructor. */
     public NetworkManager() {
         _network = new Network();
         _filename = null;
+        _journaling = false;
+        _messageStorage = MessageStorage.HEAP;
+        _journalLength = -1;
+        _generation = 0;
+        _checkpointer = null;
     }
 
     /** @return The current network */
-    public Network getNetwork() {
+    public synchronized Network getNetwork() {
         return _network;
     }
 
     /**
-     * Loads the serialized application's state from a provided file.
+     * Sets whether saving the network only appends the operations performed
+     * since it was last saved to a journal next to its file, instead of
+     * rewriting the whole file. The whole file is still rewritten once the
+     * journal grows larger than it, or when the journal doesn't account for
+     * every change (such as after importing a text file).
+     *
+     * @param journaling true to save changes to a journal
+     */
+    public synchronized void setJournaling(boolean journaling) {
+        _journaling = journaling;
+        if (journaling) {
+            _network.getJournal().start();
+        } else {
+            _network.getJournal().stop();
+        }
+    }
+
+    /**
+     * Sets where the messages of the finished text communications of the
+     * current network, and of the networks loaded afterwards, are kept.
+     *
+     * @param storage Where the messages are kept
+     * @throws IOException if the file of mapped messages cannot be created
+     */
+    public synchronized void setMessageStorage(MessageStorage storage)
+      throws IOException {
+        _network.setMessageStorage(storage);
+        _messageStorage = storage;
+    }
+
+    /**
+     * Starts taking checkpoints of the current file in the background, on a
+     * schedule and/or once a number of operations has been saved to its
+     * journal. A checkpoint compacts the snapshot and the journal saved so
+     * far into a new snapshot, keeping some of the previous snapshots next to
+     * it, so that saving keeps only appending the latest changes to the
+     * journal. Unsaved changes are never checkpointed. Checkpoints compact the
+     * journal, so saving changes to the journal is turned on.
+     *
+     * @param interval Milliseconds between checkpoints, or 0 for no schedule
+     * @param changes  Saved operations after which a checkpoint is taken, or
+     *                 0 to only follow the schedule
+     * @param backups  Number of previous snapshots to keep
+     */
+    public synchronized void startCheckpointing(long interval, int changes,
+      int backups) {
+        if (_checkpointer != null) {
+            throw new IllegalStateException("Already checkpointing");
+        }
+        if (!_journaling) {
+            setJournaling(true);
+        }
+        _checkpointer = new Checkpointer(this, interval);
+        _checkpointChanges = changes;
+        _checkpointBackups = backups;
+        _savedOperations = 0;
+        _checkpointer.start();
+    }
+
+    /**
+     * Stops taking checkpoints of the network, waiting for the one being
+     * taken, if any.
+     */
+    public void stopCheckpointing() {
+        Checkpointer checkpointer;
+        synchronized (this) {
+            checkpointer = _checkpointer;
+            _checkpointer = null;
+        }
+        if (checkpointer != null) {
+            checkpointer.stop();
+        }
+    }
+
+    /**
+     * Takes a checkpoint of the current file: rebuilds the network from the
+     * snapshot and the journal saved so far into a network of its own, and
+     * writes it as the new snapshot, without holding the lock of the manager.
+     * A mark is left in the journal before the new snapshot replaces the
+     * previous one and the journal is rebased onto it, so that the journal
+     * can be performed on either snapshot. Nothing happens if the journal has
+     * no operations.
+     *
+     * @throws IOException if there is an error reading or writing the files
+     */
+    void checkpoint() throws IOException {
+        Path file;
+        Path journal;
+        long snapshotLength;
+        int snapshotChecksum;
+        long included;
+        int generation;
+        MessageStorage storage;
+        synchronized (this) {
+            if (_filename == null ||
+              !NetworkJournal.hasOperations(_journalLength)) {
+                return;
+            }
+            file = Path.of(_filename);
+            journal = journalFile(_filename);
+            _savedOperations = 0;
+            snapshotLength = _snapshotLength;
+            snapshotChecksum = _snapshotChecksum;
+            included = _journalLength;
+            generation = _generation;
+            storage = _messageStorage;
+        }
+
+        Path temporary = Path.of(file + ".checkpoint");
+        CRC32 checksum = new CRC32();
+        try {
+            Network network;
+            try (BufferedInputStream in = new BufferedInputStream(
+              new FileInputStream(file.toFile()))) {
+                network = readSnapshot(in, storage);
+            }
+            if (NetworkJournal.replay(journal, included, snapshotLength,
+              snapshotChecksum, network) < 0) {
+                throw new IOException("Journal no longer extends " + file);
+            }
+            writeSnapshot(network, temporary, checksum);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            Files.deleteIfExists(temporary);
+            synchronized (this) {
+                if (generation != _generation) {
+                    // the file was replaced meanwhile
+                    return;
+                }
+            }
+            throw new IOException("Cannot checkpoint " + file, e);
+        }
+
+        synchronized (this) {
+            if (generation != _generation) {
+                Files.deleteIfExists(temporary);
+                return;
+            }
+            long checkpointLength = Files.size(temporary);
+            int checkpointChecksum = (int) checksum.getValue();
+            long marked = _journalLength;
+            NetworkJournal.mark(journal, marked, checkpointLength,
+                checkpointChecksum, included);
+            keepBackup(file);
+            DurableFiles.replace(temporary, file);
+            _snapshotLength = checkpointLength;
+            _snapshotChecksum = checkpointChecksum;
+            _journalLength = NetworkJournal.rebase(journal, marked,
+                checkpointLength, checkpointChecksum, included);
+        }
+    }
+
+    /**
+     * Keeps the snapshot about to be replaced as the first of the previous
+     * snapshots of a file, dropping the oldest ones.
+     *
+     * @param file The file whose snapshot is about to be replaced
+     * @throws IOException if there is an error renaming or copying the files
+     */
+    private void keepBackup(Path file) throws IOException {
+        if (_checkpointBackups <= 0) {
+            return;
+        }
+        Files.deleteIfExists(backupFile(file, _checkpointBackups));
+        for (int i = _checkpointBackups - 1; i > 0; i--) {
+            Path backup = backupFile(file, i);
+            if (Files.exists(backup)) {
+                Files.move(backup, backupFile(file, i + 1));
+            }
+        }
+        try {
+            Files.createLink(backupFile(file, 1), file);
+        } catch (FileSystemException | UnsupportedOperationException e) {
+            Files.copy(file, backupFile(file, 1));
+        }
+    }
+
+    private static Path backupFile(Path file, int backup) {
+        return Path.of(file + "." + backup);
+    }
+
+    /**
+     * Gets the journal file next to a network file.
+     *
+     * @param filename The name of the network file
+     * @return The path of its journal file
+     */
+    private static Path journalFile(String filename) {
+        return Path.of(filename + ".journal");
+    }
+
+    /**
+     * Loads the serialized application's state from a provided file, and
+     * performs the operations of the journal next to it, if any. Files saved
+     * with Java serialization by earlier versions are still accepted.
      *
      * @param filename Name of the file containing the serialized application's
      *                 state to load
      * @throws UnavailableFileException if the specified file does not exist or
      *                                  it doesn't have the correct binary data
      */
-    public void load(String filename) throws UnavailableFileException {
-        try (ObjectInputStream ois = new ObjectInputStream(
-          new BufferedInputStream(new FileInputStream(filename)))) {
-            _network = (Network) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+    public synchronized void load(String filename)
+      throws UnavailableFileException {
+        Network network;
+        CRC32 checksum = new CRC32();
+        long snapshotLength;
+        long journalLength;
+        try (BufferedInputStream in = new BufferedInputStream(
+          new CheckedInputStream(new FileInputStream(filename), checksum))) {
+            network = readSnapshot(in, _messageStorage);
+            in.transferTo(OutputStream.nullOutputStream());
+            snapshotLength = new File(filename).length();
+            journalLength = NetworkJournal.replay(journalFile(filename),
+                Long.MAX_VALUE, snapshotLength, (int) checksum.getValue(),
+                network);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
             throw new UnavailableFileException(filename);
         }
+        _network = network;
         _filename = filename;
+        _snapshotLength = snapshotLength;
+        _snapshotChecksum = (int) checksum.getValue();
+        _journalLength = journalLength;
+        _generation++;
+        if (_journaling) {
+            _network.getJournal().start();
+        }
         _network.setChanged(false);
     }
 
+    /**
+     * Reads a network from a snapshot, or from Java serialization for files
+     * saved by earlier versions.
+     *
+     * @param in      The stream to read the network from
+     * @param storage Where the network keeps its messages
+     * @return The network
+     * @throws IOException            if there is an error reading the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *                                cannot be found
+     */
+    private static Network readSnapshot(BufferedInputStream in,
+      MessageStorage storage) throws IOException, ClassNotFoundException {
+        if (NetworkSnapshot.isSnapshot(in)) {
+            return NetworkSnapshot.read(in, storage);
+        }
+        Network network = (Network) new ObjectInputStream(in).readObject();
+        if (storage != MessageStorage.HEAP) {
+            network.setMessageStorage(storage);
+        }
+        return network;
+    }
+
+    /**
+     * Writes a snapshot of a network into a file and forces it to the storage
+     * device.
+     *
+     * @param network  The network to write
+     * @param file     The file to write the snapshot to
+     * @param checksum The checksum to update with the snapshot
+     * @throws FileNotFoundException if for some reason the file cannot be
+     *                               created or opened
+     * @throws IOException           if there is some error while serializing
+     *                               the state of the network to disk
+     */
+    private static void writeSnapshot(Network network, Path file,
+      CRC32 checksum) throws FileNotFoundException, IOException {
+        try (FileOutputStream fileOut = new FileOutputStream(file.toFile());
+          BufferedOutputStream out = new BufferedOutputStream(
+            new CheckedOutputStream(fileOut, checksum))) {
+            NetworkSnapshot.write(network, out);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
     /**
      * Saves the serialized application's state into the file associated to the
      * current network.
@@ -67,21 +380,56 @@ public class NetworkManager {
      *                                         serializing the state of the
      *                                         network to disk
      */
-    public void save() throws MissingFileAssociationException,
+    public synchronized void save() throws MissingFileAssociationException,
       FileNotFoundException, IOException {
         if (_filename == null) {
             throw new MissingFileAssociationException();
         }
 
         if (_network.hasChanged()) {
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-              new BufferedOutputStream(new FileOutputStream(_filename)))) {
-                oos.writeObject(_network);
+            if (_journaling && _network.getJournal().isRecording() &&
+              _journalLength < _snapshotLength) {
+                _savedOperations +=
+                    _network.getJournal().getPendingOperations();
+                _journalLength = _network.getJournal().flush(
+                    journalFile(_filename), _journalLength, _snapshotLength,
+                    _snapshotChecksum);
+                if (_checkpointer != null && _checkpointChanges > 0 &&
+                  _savedOperations >= _checkpointChanges) {
+                    _checkpointer.checkpointSoon();
+                }
+            } else {
+                saveSnapshot();
             }
             _network.setChanged(false);
         }
     }
 
+    /**
+     * Rewrites the whole network into the current file, leaving it with no
+     * journal.
+     *
+     * @throws FileNotFoundException if for some reason the file cannot be
+     *                               created or opened
+     * @throws IOException           if there is some error while serializing
+     *                               the state of the network to disk
+     */
+    private void saveSnapshot() throws FileNotFoundException, IOException {
+        Path file = Path.of(_filename);
+        Path temporary = Path.of(_filename + ".tmp");
+        CRC32 checksum = new CRC32();
+        writeSnapshot(_network, temporary, checksum);
+        DurableFiles.replace(temporary, file);
+        _snapshotLength = Files.size(file);
+        _snapshotChecksum = (int) checksum.getValue();
+        _journalLength = -1;
+        _generation++;
+        Files.deleteIfExists(journalFile(_filename));
+        if (_journaling) {
+            _network.getJournal().start();
+        }
+    }
+
     /**
      * Saves the serialized application's state into the specified file. The
      * current network is associated to this file.
@@ -93,8 +441,14 @@ public class NetworkManager {
      *                                         serializing the state of the
      *                                         network to disk
      */
-    public void saveAs(String filename) throws FileNotFoundException,
-      IOException {
+    public synchronized void saveAs(String filename)
+      throws FileNotFoundException, IOException {
+        if (!filename.equals(_filename)) {
+            // the journal so far extends the snapshot in the previous file
+            _network.getJournal().stop();
+            _journalLength = -1;
+            _generation++;
+        }
         _filename = filename;
         try {
             save();
@@ -112,8 +466,23 @@ public class NetworkManager {
      * @throws ImportFileException if any error occurs while importing the file
      */
     public void importFile(String filename) throws ImportFileException {
+        importFile(filename, ImportMode.SEQUENTIAL);
+    }
+
+    /**
+     * Read text input file and create domain entities in the given mode.
+     *
+     * @param filename Name of the text input file
+     * @param mode     How the file is read and its entities are created
+     * @throws ImportFileException if any error occurs while importing the file
+     */
+    public synchronized void importFile(String filename, ImportMode mode)
+      throws ImportFileException {
+        // imported entities aren't recorded, so the next save rewrites the
+        // whole network
+        _network.getJournal().stop();
         try {
-            _network.importFile(filename);
+            _network.importFile(filename, mode);
         } catch (IOException | UnrecognizedEntryException e) {
             throw new ImportFileException(filename, e);
         }
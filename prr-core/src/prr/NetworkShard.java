@@ -0,0 +1,366 @@
+package prr;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import prr.clients.Client;
+import prr.clients.ClientDebtIndex;
+import prr.communications.Communication;
+import prr.exceptions.InvalidCommunicationException;
+import prr.terminals.Terminal;
+
+/**
+ * A shard of a network. The terminals of a network are spread over its
+ * shards by hashing their numbers, and its clients by hashing their identity,
+ * and every shard keeps, under a lock of its own, what traffic changes about
+ * its terminals and clients:
+ * <ul>
+ * <li>the communications made by its terminals, as the rows of a
+ * {@link CommunicationStore} of its own, and the ongoing ones also as
+ * objects;</li>
+ * <li>the ids of the communications made and received by its terminals;</li>
+ * <li>which of its terminals are unused, and which have a positive
+ * balance;</li>
+ * <li>the payments and debts of its clients, and which of them have
+ * debts.</li>
+ * </ul>
+ * A communication between terminals of different shards is handed off by
+ * the shard of its sender to the shard of its receiver, which only indexes
+ * its id. Communications between different terminals and clients then mostly
+ * lock different shards, instead of all of them locking the network.
+ * <p>
+ * A shard is rebuilt whenever the network is loaded, so it is never saved.
+ */
+class NetworkShard {
+
+    /** Number of shards of a network, a power of two. */
+    static final int SHARDS = 16;
+
+    /** The index of the shard in its network. */
+    private final int _index;
+
+    /** Tells where every communication of the network is kept. */
+    private final ShardDirectory _directory;
+
+    /** The communications made by the terminals, as rows. */
+    private final CommunicationStore _store;
+
+    /**
+     * The ongoing communications made by the terminals, by their id, whose
+     * rows in the store only mark them as ongoing.
+     */
+    private final Map<Integer, Communication> _ongoingCommunications;
+
+    /** The ids of the communications made by each terminal. */
+    private final CommunicationIndex _communicationsMade;
+
+    /** The ids of the communications received by each terminal. */
+    private final CommunicationIndex _communicationsReceived;
+
+    /** The terminals that took part in no communication yet. */
+    private TerminalSet _unusedTerminals;
+
+    /** The terminals with a positive balance. */
+    private TerminalSet _terminalsWithPositiveBalance;
+
+    /** The clients with debts, sorted by decreasing debts. */
+    private ClientDebtIndex _clientDebtIndex;
+
+    /** Running total of the payments of the clients, in cents. */
+    private long _payments;
+
+    /** Running total of the debts of the clients, in cents. */
+    private long _debts;
+
+    /**
+     * @param index     The index of the shard in its network
+     * @param directory Tells where every communication of the network is
+     *                  kept, which the shard writes for its own
+     */
+    NetworkShard(int index, ShardDirectory directory) {
+        _index = index;
+        _directory = directory;
+        _store = new CommunicationStore();
+        _ongoingCommunications = new HashMap<Integer, Communication>();
+        _communicationsMade = new CommunicationIndex();
+        _communicationsReceived = new CommunicationIndex();
+        clearBalances();
+    }
+
+    /**
+     * Forgets the totals of the clients and which terminals are unused or
+     * have a positive balance, before they are recomputed.
+     */
+    synchronized void clearBalances() {
+        _unusedTerminals = new TerminalSet();
+        _terminalsWithPositiveBalance = new TerminalSet();
+        _clientDebtIndex = new ClientDebtIndex();
+        _payments = 0L;
+        _debts = 0L;
+    }
+
+    /**
+     * Adds a communication made by a terminal of the shard.
+     *
+     * @param communication The communication
+     */
+    synchronized void addCommunication(Communication communication) {
+        int size = _store.size();
+        located(_store.add(communication), size);
+        if (communication.isOngoing()) {
+            _ongoingCommunications.put(communication.getId(), communication);
+        }
+    }
+
+    /**
+     * Adds the finished communication of a row of another store, made by a
+     * terminal of the shard.
+     *
+     * @param store The other store
+     * @param row   The row
+     */
+    synchronized void addCommunication(CommunicationStore store, int row) {
+        int size = _store.size();
+        located(_store.add(store, row), size);
+    }
+
+    /**
+     * Records where a communication just added to the store is kept, and
+     * where the rows it moved up are kept now.
+     *
+     * @param row  The row of the communication
+     * @param size The number of rows of the store before it was added
+     */
+    private void located(int row, int size) {
+        int end = _store.size() > size ? _store.size() : row + 1;
+        for (int moved = row; moved < end; moved++) {
+            _directory.put(_store.getId(moved), _index, moved);
+        }
+    }
+
+    /**
+     * Fills in the row of an ongoing communication made by a terminal of the
+     * shard that just finished, which stops being kept as an object.
+     *
+     * @param communication The finished communication
+     */
+    synchronized void archiveCommunication(Communication communication) {
+        int size = _store.size();
+        located(_store.add(communication), size);
+        _ongoingCommunications.remove(communication.getId());
+    }
+
+    /**
+     * Gets a communication made by a terminal of the shard, turning it back
+     * into an object if it is finished.
+     *
+     * @param id        The id of the communication
+     * @param terminals The terminals of the network
+     * @return The communication, or null if it is not in the shard
+     */
+    synchronized Communication getCommunication(int id,
+      TerminalTable terminals) {
+        int row = find(id);
+        if (row < 0) {
+            return null;
+        }
+        return _store.isOngoing(row) ? _ongoingCommunications.get(id) :
+            _store.get(row, terminals);
+    }
+
+    /**
+     * Finds the row of a communication made by a terminal of the shard,
+     * where the directory tells it is, unless it moved since.
+     *
+     * @param id The id of the communication
+     * @return The row, or -1 if the communication is not in the shard
+     */
+    private int find(int id) {
+        int entry = _directory.get(id);
+        return entry < 0 || ShardDirectory.shard(entry) != _index ? -1 :
+            _store.find(id, ShardDirectory.row(entry));
+    }
+
+    /**
+     * Marks a finished communication as paid by the terminal of the shard
+     * that made it.
+     *
+     * @param id     The id of the communication
+     * @param sender The number of the terminal paying for it
+     * @return The price of the communication, in cents
+     * @throws InvalidCommunicationException if the communication is not in
+     *                                       the shard, is ongoing, was
+     *                                       already paid or was not made by
+     *                                       the terminal
+     */
+    synchronized long payCommunication(int id, int sender)
+      throws InvalidCommunicationException {
+        int row = find(id);
+        if (row < 0 || _store.isOngoing(row) ||
+          _store.getSender(row) != sender || _store.isPaid(row)) {
+            throw new InvalidCommunicationException();
+        }
+        _store.setPaid(row);
+        return _store.getPrice(row);
+    }
+
+    /**
+     * Takes a view of the communications made by the terminals of the
+     * shard, together with the ongoing ones, whose rows don't hold them.
+     *
+     * @param ongoing The map the ongoing communications are added to, by
+     *                their id
+     * @return A view of the store of the shard
+     * @see CommunicationStore#view()
+     */
+    synchronized CommunicationStore view(
+      Map<Integer, Communication> ongoing) {
+        ongoing.putAll(_ongoingCommunications);
+        return _store.view();
+    }
+
+    /**
+     * Gets some communications made by the terminals of the shard at once,
+     * turning the finished ones back into objects.
+     *
+     * @param ids            The ids of the communications
+     * @param from           The index of the first id
+     * @param to             The index after the last id
+     * @param terminals      The terminals of the network
+     * @param communications Gets the communications at the indexes of their
+     *                       ids, with null for those that are not in the
+     *                       shard
+     */
+    synchronized void getCommunications(int[] ids, int from, int to,
+      TerminalTable terminals, Communication[] communications) {
+        for (int i = from; i < to; i++) {
+            communications[i] = getCommunication(ids[i], terminals);
+        }
+    }
+
+    /**
+     * Moves the messages of the communications of the shard into another
+     * store of messages.
+     *
+     * @param messages The new store of messages
+     * @see CommunicationStore#moveMessages(MessageStore)
+     */
+    synchronized void moveMessages(MessageStore messages) {
+        _store.moveMessages(messages);
+    }
+
+    /**
+     * Indexes a communication made by a terminal of the shard.
+     *
+     * @param terminalId The key of the terminal
+     * @param id         The id of the communication
+     */
+    synchronized void addCommunicationMade(String terminalId, int id) {
+        _communicationsMade.add(terminalId, id);
+    }
+
+    /**
+     * Indexes a communication received by a terminal of the shard.
+     *
+     * @param terminalId The key of the terminal
+     * @param id         The id of the communication
+     */
+    synchronized void addCommunicationReceived(String terminalId, int id) {
+        _communicationsReceived.add(terminalId, id);
+    }
+
+    /**
+     * @param terminalId The key of a terminal of the shard
+     * @return The ids of the communications made by the terminal, sorted
+     */
+    synchronized int[] getCommunicationsMade(String terminalId) {
+        return _communicationsMade.get(terminalId);
+    }
+
+    /**
+     * @param terminalId The key of a terminal of the shard
+     * @return The ids of the communications received by the terminal, sorted
+     */
+    synchronized int[] getCommunicationsReceived(String terminalId) {
+        return _communicationsReceived.get(terminalId);
+    }
+
+    /**
+     * Moves a terminal of the shard in or out of the unused terminals.
+     *
+     * @param terminal The terminal
+     * @param unused   true if the terminal is unused, false otherwise
+     */
+    synchronized void setUnused(Terminal terminal, boolean unused) {
+        _unusedTerminals.set(terminal, unused);
+    }
+
+    /**
+     * Moves a terminal of the shard in or out of the terminals with a
+     * positive balance, as its balance is now.
+     *
+     * @param terminal The terminal
+     */
+    synchronized void terminalBalanceUpdated(Terminal terminal) {
+        _terminalsWithPositiveBalance.set(terminal, terminal.getBalance() > 0);
+    }
+
+    /**
+     * Adds the unused terminals of the shard to a set of terminals.
+     *
+     * @param terminals The set
+     */
+    synchronized void addUnusedTerminalsTo(TerminalSet terminals) {
+        terminals.addAll(_unusedTerminals);
+    }
+
+    /**
+     * Adds the terminals of the shard with a positive balance to a set of
+     * terminals.
+     *
+     * @param terminals The set
+     */
+    synchronized void addTerminalsWithPositiveBalanceTo(
+      TerminalSet terminals) {
+        terminals.addAll(_terminalsWithPositiveBalance);
+    }
+
+    /**
+     * Updates the totals and the debt index as the balance of a client of
+     * the shard changes.
+     *
+     * @param client        The client whose balance changed
+     * @param paymentsDelta The amount added to the client's payments, in cents
+     * @param debtsDelta    The amount added to the client's debts, in cents
+     */
+    synchronized void balanceUpdated(Client client, long paymentsDelta,
+      long debtsDelta) {
+        _payments += paymentsDelta;
+        _debts += debtsDelta;
+        if (debtsDelta != 0L) {
+            _clientDebtIndex.update(client);
+        }
+    }
+
+    /** @return The payments of the clients of the shard, in cents */
+    synchronized long getPayments() {
+        return _payments;
+    }
+
+    /** @return The debts of the clients of the shard, in cents */
+    synchronized long getDebts() {
+        return _debts;
+    }
+
+    /**
+     * Gets the clients of the shard with the highest debts.
+     *
+     * @param limit The maximum number of clients to get
+     * @return The clients sorted by decreasing debts
+     */
+    synchronized Collection<Client> getClientsWithDebts(int limit) {
+        return _clientDebtIndex.getClients(limit);
+    }
+
+}
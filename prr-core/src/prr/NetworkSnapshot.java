@@ -0,0 +1,623 @@
+package prr;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import prr.clients.Client;
+import prr.communications.Communication;
+import prr.communications.InteractiveCommunication;
+import prr.communications.TextCommunication;
+import prr.communications.VideoCommunication;
+import prr.communications.VoiceCommunication;
+import prr.notifications.BusyToIdleNotification;
+import prr.notifications.Notification;
+import prr.notifications.OffToIdleNotification;
+import prr.notifications.OffToSilentNotification;
+import prr.notifications.SilentToIdleNotification;
+import prr.tariffs.RateTable;
+import prr.tariffs.TariffPlan;
+import prr.terminals.FriendSet;
+import prr.terminals.Terminal;
+import prr.util.Money;
+import prr.exceptions.DuplicateClientKeyException;
+import prr.exceptions.DuplicateTerminalKeyException;
+import prr.exceptions.IllegalTerminalStatusException;
+import prr.exceptions.InvalidFriendException;
+import prr.exceptions.InvalidTerminalKeyException;
+import prr.exceptions.UnknownClientKeyException;
+import prr.exceptions.UnknownEntryTypeException;
+import prr.exceptions.UnknownTerminalKeyException;
+
+/**
+ * Versioned binary snapshot of a network.
+ * <p>
+ * A snapshot starts with a magic number and a format version, followed by a
+ * table with the strings of the network (client keys and names and tariff
+ * plan classes), which are then referred to by their position on the table.
+ * Clients, terminals and communications are likewise referred to by their
+ * position on the snapshot, terminal keys are stored as numbers and every
+ * type and status is stored as a single byte. Counts, positions and ids are
+ * stored as variable-length integers, communication ids as the difference to
+ * the previous one, and amounts of money as variable-length zigzag-encoded
+ * counts of cents (version 1 stored them as doubles, and is still read). In
+ * order:
+ * <ol>
+ * <li>the string table;</li>
+ * <li>the clients, with their level and tariff plan;</li>
+ * <li>the terminals, with their balance and status;</li>
+ * <li>the friends and the clients to notify of every terminal;</li>
+ * <li>the communications;</li>
+ * <li>the pending notifications of every client;</li>
+ * <li>the ID for the next communication.</li>
+ * </ol>
+ * Clients are restored with the default notification delivery method.
+ */
+class NetworkSnapshot {
+
+    /** Magic number that starts every snapshot ("PRRS"). */
+    private static final int MAGIC = 0x50525253;
+
+    /** Version of the snapshot format. */
+    private static final int VERSION = 2;
+
+    /** Version of the snapshot format that stored money as doubles. */
+    private static final int DOUBLE_MONEY_VERSION = 1;
+
+    private static final String[] LEVEL_TYPES = { "NORMAL", "GOLD", "PLATINUM" };
+    private static final String[] TERMINAL_TYPES = { "BASIC", "FANCY" };
+    private static final String[] STATUS_TYPES =
+        { "IDLE", "SILENCE", "OFF", "BUSY" };
+    private static final String[] COMMUNICATION_TYPES =
+        { "TEXT", "VOICE", "VIDEO" };
+    private static final String[] NOTIFICATION_TYPES =
+        { "B2I", "O2I", "O2S", "S2I" };
+
+    /** Flag of the clients with notifications enabled. */
+    private static final int NOTIFICATIONS_ENABLED = 1;
+
+    /** Flag of the ongoing communications. */
+    private static final int ONGOING = 1;
+
+    /** Flag of the paid communications. */
+    private static final int PAID = 2;
+
+    /**
+     * Checks if a stream starts with a snapshot, leaving the stream at the
+     * position it was.
+     *
+     * @param in The stream to check
+     * @return true if the stream starts with the magic number of a snapshot
+     * @throws IOException if there is an error reading the stream
+     */
+    static boolean isSnapshot(BufferedInputStream in) throws IOException {
+        in.mark(Integer.BYTES);
+        int magic = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            int b = in.read();
+            if (b < 0) {
+                in.reset();
+                return false;
+            }
+            magic = (magic << 8) | b;
+        }
+        in.reset();
+        return magic == MAGIC;
+    }
+
+    /**
+     * Writes a snapshot of a network.
+     *
+     * @param network The network to write
+     * @param out     The stream to write the snapshot to
+     * @throws IOException if there is an error writing the stream
+     */
+    static void write(Network network, OutputStream out) throws IOException {
+        new Writer(network, new DataOutputStream(out)).write();
+    }
+
+    /**
+     * Reads a network from a snapshot.
+     *
+     * @param in      The stream to read the snapshot from
+     * @param storage Where the network keeps the messages it reads
+     * @return The restored network
+     * @throws IOException if there is an error reading the stream or the
+     *                     snapshot is not valid
+     */
+    static Network read(InputStream in, MessageStorage storage)
+      throws IOException {
+        return new Reader(new DataInputStream(in), storage).read();
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value)
+      throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            if (shift == 28) {
+                throw new IOException("Malformed snapshot integer");
+            }
+        }
+    }
+
+    private static void writeMoney(DataOutputStream out, long amount)
+      throws IOException {
+        long value = (amount << 1) ^ (amount >> 63);
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readMoney(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+            if (shift == 63) {
+                throw new IOException("Malformed snapshot amount");
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+      throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int typeCode(String[] types, String type)
+      throws IOException {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].equals(type)) {
+                return i;
+            }
+        }
+        throw new IOException("Unsupported type in snapshot: " + type);
+    }
+
+    private static String type(String[] types, int code) throws IOException {
+        if (code < 0 || code >= types.length) {
+            throw new IOException("Unknown type code in snapshot: " + code);
+        }
+        return types[code];
+    }
+
+    /**
+     * Writes the snapshot of a single network.
+     */
+    private static class Writer {
+
+        private final Network _network;
+        private final DataOutputStream _out;
+        private final Map<String, Integer> _strings;
+        private final Map<Client, Integer> _clients;
+        private final Map<Terminal, Integer> _terminals;
+
+        private Writer(Network network, DataOutputStream out) {
+            _network = network;
+            _out = out;
+            _strings = new LinkedHashMap<String, Integer>();
+            _clients = new IdentityHashMap<Client, Integer>();
+            _terminals = new IdentityHashMap<Terminal, Integer>();
+        }
+
+        private void write() throws IOException {
+            _out.writeInt(MAGIC);
+            _out.writeShort(VERSION);
+
+            for (Client client : _network.getAllClients()) {
+                intern(client.getId());
+                intern(client.getName());
+                intern(client.getTariffPlan().getClass().getName());
+            }
+            writeVarInt(_out, _strings.size());
+            for (String string : _strings.keySet()) {
+                writeString(_out, string);
+            }
+
+            writeVarInt(_out, _network.getAllClients().size());
+            for (Client client : _network.getAllClients()) {
+                _clients.put(client, _clients.size());
+                writeClient(client);
+            }
+
+            writeVarInt(_out, _network.getAllTerminals().size());
+            for (Terminal terminal : _network.getAllTerminals()) {
+                _terminals.put(terminal, _terminals.size());
+                writeTerminal(terminal);
+            }
+            for (Terminal terminal : _network.getAllTerminals()) {
+                FriendSet friends = terminal.getFriends();
+                writeVarInt(_out, friends.size());
+                for (int i = 0; i < friends.size(); i++) {
+                    writeVarInt(_out, _terminals.get(
+                        _network.findTerminal(friends.get(i))));
+                }
+                writeVarInt(_out, terminal.getClientsToNotify().size());
+                for (Client client : terminal.getClientsToNotify()) {
+                    writeVarInt(_out, _clients.get(client));
+                }
+            }
+
+            writeCommunications();
+
+            for (Client client : _network.getAllClients()) {
+                writeVarInt(_out, client.getNotifications().size());
+                for (Notification notification : client.getNotifications()) {
+                    _out.writeByte(typeCode(NOTIFICATION_TYPES,
+                        notification.getNotificationType()));
+                    writeVarInt(_out, _terminals.get(
+                        terminal(notification.getNotifyingTerminalId())));
+                }
+            }
+
+            writeVarInt(_out, _network.peekNextCommunicationId());
+            _out.flush();
+        }
+
+        private void intern(String string) {
+            _strings.putIfAbsent(string, _strings.size());
+        }
+
+        private Terminal terminal(String id) throws IOException {
+            try {
+                return _network.getTerminal(id);
+            } catch (UnknownTerminalKeyException e) {
+                throw new IOException("Unknown terminal " + id, e);
+            }
+        }
+
+        private void writeClient(Client client) throws IOException {
+            writeVarInt(_out, _strings.get(client.getId()));
+            writeVarInt(_out, _strings.get(client.getName()));
+            writeVarInt(_out, client.getTaxId());
+            _out.writeByte(client.hasNotificationsEnabled() ?
+                NOTIFICATIONS_ENABLED : 0);
+            _out.writeByte(typeCode(LEVEL_TYPES, client.getLevelType()));
+            writeMoney(_out, client.getPayments());
+            writeMoney(_out, client.getDebts());
+            writeVarInt(_out, client.getNumberOfConsecutiveTextCommunications());
+            writeVarInt(_out,
+                client.getNumberOfConsecutiveVideoCommunications());
+            writeVarInt(_out,
+                _strings.get(client.getTariffPlan().getClass().getName()));
+        }
+
+        private void writeTerminal(Terminal terminal) throws IOException {
+            _out.writeByte(typeCode(TERMINAL_TYPES, terminal.getTerminalType()));
+            writeVarInt(_out, Integer.parseInt(terminal.getTerminalId()));
+            writeVarInt(_out, _clients.get(terminal.getOwner()));
+            writeMoney(_out, terminal.getPayments());
+            writeMoney(_out, terminal.getDebts());
+            _out.writeByte(typeCode(STATUS_TYPES, terminal.getStatusType()));
+            _out.writeByte(typeCode(STATUS_TYPES,
+                terminal.getRestingStatusType()));
+        }
+
+        /**
+         * Writes the communications in the order of their ids, merging the
+         * views of the stores of the shards, the finished ones straight from
+         * their rows, without turning them back into objects.
+         */
+        private void writeCommunications() throws IOException {
+            Map<Integer, Communication> ongoing =
+                new HashMap<Integer, Communication>();
+            CommunicationStore.Merge merge =
+                _network.viewCommunications(ongoing);
+            writeVarInt(_out, merge.size());
+            int previousId = 0;
+            while (merge.next()) {
+                CommunicationStore store = merge.store();
+                int row = merge.row();
+                int id = store.getId(row);
+                if (store.isOngoing(row)) {
+                    writeCommunication(ongoing.get(id), previousId);
+                } else {
+                    writeStoredCommunication(store, row, previousId);
+                }
+                previousId = id;
+            }
+        }
+
+        private void writeStoredCommunication(CommunicationStore store,
+          int row, int previousId) throws IOException {
+            int type = store.getRateType(row);
+            _out.writeByte(type);
+            writeVarInt(_out, store.getId(row) - previousId);
+            writeVarInt(_out,
+                _terminals.get(_network.findTerminal(store.getSender(row))));
+            writeVarInt(_out, _terminals.get(
+                _network.findTerminal(store.getReceiver(row))));
+            _out.writeByte(store.isPaid(row) ? PAID : 0);
+            writeMoney(_out, store.getPrice(row));
+            if (type == RateTable.TEXT) {
+                writeString(_out, store.getMessage(row));
+            } else {
+                writeVarInt(_out, store.getUnits(row));
+            }
+        }
+
+        private void writeCommunication(Communication communication,
+          int previousId) throws IOException {
+            _out.writeByte(typeCode(COMMUNICATION_TYPES,
+                communication.getCommunicationType()));
+            writeVarInt(_out, communication.getId() - previousId);
+            writeVarInt(_out,
+                _terminals.get(communication.getTerminalSender()));
+            writeVarInt(_out,
+                _terminals.get(communication.getTerminalReceiver()));
+            _out.writeByte((communication.isOngoing() ? ONGOING : 0) |
+                (communication.isPaid() ? PAID : 0));
+            writeMoney(_out, communication.getPrice());
+            if (communication instanceof TextCommunication) {
+                writeString(_out,
+                    ((TextCommunication) communication).getMessage());
+            } else {
+                writeVarInt(_out, communication.getUnits());
+            }
+        }
+
+    }
+
+    /**
+     * Reads a single network from its snapshot.
+     */
+    private static class Reader {
+
+        private final DataInputStream _in;
+        private final Network _network;
+        private int _version;
+        private String[] _strings;
+        private Client[] _clients;
+        private Terminal[] _terminals;
+        private Map<String, TariffPlan> _plans;
+
+        private Reader(DataInputStream in, MessageStorage storage)
+          throws IOException {
+            _in = in;
+            _network = new Network();
+            if (storage != MessageStorage.HEAP) {
+                _network.setMessageStorage(storage);
+            }
+            _plans = new LinkedHashMap<String, TariffPlan>();
+        }
+
+        private Network read() throws IOException {
+            if (_in.readInt() != MAGIC) {
+                throw new IOException("Not a network snapshot");
+            }
+            _version = _in.readUnsignedShort();
+            if (_version != VERSION && _version != DOUBLE_MONEY_VERSION) {
+                throw new IOException("Unsupported snapshot version " +
+                    _version);
+            }
+
+            _strings = new String[readVarInt(_in)];
+            for (int i = 0; i < _strings.length; i++) {
+                _strings[i] = readString(_in);
+            }
+
+            _clients = new Client[readVarInt(_in)];
+            for (int i = 0; i < _clients.length; i++) {
+                _clients[i] = readClient();
+            }
+
+            _terminals = new Terminal[readVarInt(_in)];
+            for (int i = 0; i < _terminals.length; i++) {
+                _terminals[i] = readTerminal();
+            }
+            for (Terminal terminal : _terminals) {
+                readTerminalRelations(terminal);
+            }
+
+            int communications = readVarInt(_in);
+            int previousId = 0;
+            for (int i = 0; i < communications; i++) {
+                Communication communication = readCommunication(previousId);
+                _network.restoreCommunication(communication);
+                previousId = communication.getId();
+            }
+
+            for (Client client : _clients) {
+                int notifications = readVarInt(_in);
+                for (int i = 0; i < notifications; i++) {
+                    client.restoreNotification(readNotification());
+                }
+            }
+
+            _network.restored(readVarInt(_in));
+            return _network;
+        }
+
+        private long money() throws IOException {
+            if (_version == DOUBLE_MONEY_VERSION) {
+                return Money.fromUnits(_in.readDouble());
+            }
+            return readMoney(_in);
+        }
+
+        private String string() throws IOException {
+            return element(_strings, readVarInt(_in));
+        }
+
+        private Client client() throws IOException {
+            return element(_clients, readVarInt(_in));
+        }
+
+        private Terminal terminal() throws IOException {
+            return element(_terminals, readVarInt(_in));
+        }
+
+        private <T> T element(T[] elements, int index) throws IOException {
+            if (index < 0 || index >= elements.length) {
+                throw new IOException("Invalid reference in snapshot: " +
+                    index);
+            }
+            return elements[index];
+        }
+
+        private Client readClient() throws IOException {
+            String id = string();
+            String name = string();
+            int taxId = readVarInt(_in);
+            int flags = _in.readUnsignedByte();
+            String levelType = type(LEVEL_TYPES, _in.readUnsignedByte());
+            long payments = money();
+            long debts = money();
+            int textCommunications = readVarInt(_in);
+            int videoCommunications = readVarInt(_in);
+            TariffPlan plan = plan(string());
+
+            try {
+                Client client = _network.registerClient(id, name, taxId);
+                client.setNotificationState(
+                    (flags & NOTIFICATIONS_ENABLED) != 0);
+                client.restoreLevel(levelType, payments, debts,
+                    textCommunications, videoCommunications, plan);
+                return client;
+            } catch (DuplicateClientKeyException e) {
+                throw new IOException("Duplicate client " + id, e);
+            }
+        }
+
+        private TariffPlan plan(String className) throws IOException {
+            TariffPlan plan = _plans.get(className);
+            if (plan == null) {
+                try {
+                    plan = Class.forName(className)
+                        .asSubclass(TariffPlan.class)
+                        .getDeclaredConstructor()
+                        .newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IOException("Unknown tariff plan " + className,
+                        e);
+                }
+                _plans.put(className, plan);
+            }
+            return plan;
+        }
+
+        private Terminal readTerminal() throws IOException {
+            String type = type(TERMINAL_TYPES, _in.readUnsignedByte());
+            String id = String.format("%06d", readVarInt(_in));
+            Client owner = client();
+            long payments = money();
+            long debts = money();
+            String statusType = type(STATUS_TYPES, _in.readUnsignedByte());
+            String restingStatusType =
+                type(STATUS_TYPES, _in.readUnsignedByte());
+
+            try {
+                Terminal terminal =
+                    _network.registerTerminal(type, id, owner.getId());
+                terminal.restoreBalance(payments, debts);
+                terminal.restoreStatus(statusType, restingStatusType);
+                return terminal;
+            } catch (UnknownClientKeyException | InvalidTerminalKeyException |
+              DuplicateTerminalKeyException | UnknownEntryTypeException |
+              IllegalTerminalStatusException e) {
+                throw new IOException("Invalid terminal " + id, e);
+            }
+        }
+
+        private void readTerminalRelations(Terminal terminal)
+          throws IOException {
+            int friends = readVarInt(_in);
+            for (int i = 0; i < friends; i++) {
+                Terminal friend = terminal();
+                try {
+                    terminal.addFriend(friend.getTerminalId(), _network);
+                } catch (UnknownTerminalKeyException | InvalidFriendException e) {
+                    throw new IOException("Invalid friend " +
+                        friend.getTerminalId(), e);
+                }
+            }
+
+            int clientsToNotify = readVarInt(_in);
+            List<Client> clients = new ArrayList<Client>(clientsToNotify);
+            for (int i = 0; i < clientsToNotify; i++) {
+                clients.add(client());
+            }
+            terminal.restoreClientsToNotify(clients);
+        }
+
+        private Communication readCommunication(int previousId)
+          throws IOException {
+            String type = type(COMMUNICATION_TYPES, _in.readUnsignedByte());
+            int id = previousId + readVarInt(_in);
+            Terminal sender = terminal();
+            Terminal receiver = terminal();
+            int flags = _in.readUnsignedByte();
+            boolean isOngoing = (flags & ONGOING) != 0;
+            boolean isPaid = (flags & PAID) != 0;
+            long price = money();
+
+            Communication communication = switch (type) {
+                case "TEXT" -> TextCommunication.restore(readString(_in), id,
+                    receiver, sender, price, isPaid);
+                case "VOICE" -> VoiceCommunication.restore(id, receiver,
+                    sender, isOngoing, readVarInt(_in), price, isPaid);
+                default -> VideoCommunication.restore(id, receiver, sender,
+                    isOngoing, readVarInt(_in), price, isPaid);
+            };
+
+            sender.addCommunication(communication);
+            receiver.addCommunication(communication);
+            if (isOngoing) {
+                InteractiveCommunication ongoingCommunication =
+                    (InteractiveCommunication) communication;
+                sender.setOngoingCommunication(ongoingCommunication);
+                receiver.setOngoingCommunication(ongoingCommunication);
+            }
+            return communication;
+        }
+
+        private Notification readNotification() throws IOException {
+            String type = type(NOTIFICATION_TYPES, _in.readUnsignedByte());
+            Terminal terminal = terminal();
+            return switch (type) {
+                case "B2I" -> new BusyToIdleNotification(terminal);
+                case "O2I" -> new OffToIdleNotification(terminal);
+                case "O2S" -> new OffToSilentNotification(terminal);
+                default -> new SilentToIdleNotification(terminal);
+            };
+        }
+
+    }
+
+}
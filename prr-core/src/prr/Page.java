@@ -0,0 +1,44 @@
+package prr;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of a listing of the network, walked by key: a page holds the items
+ * that follow a given key, in order, and the cursor to ask for the next page
+ * with. The cursor is the key of the last item of the page, so a listing
+ * doesn't skip or repeat items when others are added or removed between
+ * pages.
+ *
+ * @param <T> The type of the items
+ */
+public final class Page<T> {
+
+    private final List<T> _items;
+    private final String _next;
+
+    /**
+     * @param items The items of the page
+     * @param next  The cursor of the next page, or null if this is the last
+     */
+    Page(List<T> items, String next) {
+        _items = Collections.unmodifiableList(items);
+        _next = next;
+    }
+
+    /** @return The items of the page, in order */
+    public List<T> getItems() {
+        return _items;
+    }
+
+    /** @return The cursor of the next page, or null if this is the last */
+    public String getNext() {
+        return _next;
+    }
+
+    /** @return true if there are items after this page, false otherwise */
+    public boolean hasNext() {
+        return _next != null;
+    }
+
+}
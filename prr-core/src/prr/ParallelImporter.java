@@ -0,0 +1,91 @@
+package prr;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import prr.util.EntryTokenizer;
+import prr.exceptions.UnrecognizedEntryException;
+
+/**
+ * Imports plain text files in chunks of entries. The entries of a chunk are
+ * parsed in parallel and then registered on the network one at a time, in
+ * file order, before the next chunk is read.
+ * <p>
+ * Since entries are registered in file order, a file is imported exactly as
+ * in the sequential import: an entry that depends on a later one is rejected,
+ * and the reported entry is the first offending one of the file. Only the
+ * entries of one chunk are kept at a time.
+ */
+class ParallelImporter {
+
+    /** Number of entries parsed together. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final Network _network;
+    private final ThreadLocal<EntryTokenizer> _tokenizers;
+
+    ParallelImporter(Network network) {
+        _network = network;
+        _tokenizers = ThreadLocal.withInitial(EntryTokenizer::new);
+    }
+
+    /**
+     * Imports the given file into the network.
+     *
+     * @param filename Name of the text input file
+     * @throws UnrecognizedEntryException if some entry (line) is not correct
+     * @throws IOException                if there was an IO error while
+     *                                    processing the text file.
+     */
+    void importFile(String filename) throws IOException,
+      UnrecognizedEntryException {
+        try (BufferedReader reader = new BufferedReader(
+          new FileReader(filename))) {
+            List<String> chunk = new ArrayList<String>(CHUNK_SIZE);
+            String entry;
+            while ((entry = reader.readLine()) != null) {
+                chunk.add(entry);
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(chunk);
+                    chunk.clear();
+                }
+            }
+            importChunk(chunk);
+        }
+    }
+
+    /**
+     * Parses a chunk of entries in parallel and registers them in order,
+     * stopping at the first one that fails to parse or to register.
+     *
+     * @param chunk The entries to import
+     * @throws UnrecognizedEntryException if some entry of the chunk is not
+     *                                    correct
+     */
+    private void importChunk(List<String> chunk)
+      throws UnrecognizedEntryException {
+        ImportEntry[] entries = new ImportEntry[chunk.size()];
+        UnrecognizedEntryException[] errors =
+            new UnrecognizedEntryException[chunk.size()];
+
+        IntStream.range(0, chunk.size()).parallel().forEach(i -> {
+            try {
+                entries[i] = ImportEntry.parse(chunk.get(i), _tokenizers.get());
+            } catch (UnrecognizedEntryException e) {
+                errors[i] = e;
+            }
+        });
+
+        for (int i = 0; i < entries.length; i++) {
+            if (errors[i] != null) {
+                throw errors[i];
+            }
+            entries[i].register(_network);
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+package prr;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import prr.clients.Client;
+import prr.tariffs.RateTable;
+import prr.tariffs.TariffPlan;
+import prr.terminals.FriendSet;
+import prr.terminals.Terminal;
+
+/**
+ * What the finished communications of a network cost and what they would
+ * have cost under another tariff plan, per terminal and per client, as
+ * computed by {@link Network#reRate(TariffPlan)}. Nothing of the network
+ * changes: no price, balance or plan is touched.
+ * <p>
+ * Communications are priced again with the current level of the paying
+ * client and the current friendship of their terminals, since the network
+ * doesn't record what they were when the communications were made.
+ * <p>
+ * The terminals are re-rated in parallel, each on its own, and the revenue
+ * of a client is then the sum of the revenue of its terminals.
+ */
+public class ReRating {
+
+    /** The revenue of a terminal or a client, before and after re-rating. */
+    public static class Revenue {
+
+        private final String _id;
+        private int _communications;
+        private long _current;
+        private long _reRated;
+
+        private Revenue(String id) {
+            _id = id;
+        }
+
+        /** @return The key of the terminal or the client */
+        public String getId() {
+            return _id;
+        }
+
+        /** @return The number of re-rated communications */
+        public int getNumberOfCommunications() {
+            return _communications;
+        }
+
+        /** @return What the communications cost, in cents */
+        public long getCurrentRevenue() {
+            return _current;
+        }
+
+        /**
+         * @return What the communications cost under the new plan, in cents
+         */
+        public long getReRatedRevenue() {
+            return _reRated;
+        }
+
+        /**
+         * @return The re-rated revenue minus the current revenue, in cents
+         */
+        public long getDelta() {
+            return _reRated - _current;
+        }
+
+        private void add(Revenue revenue) {
+            _communications += revenue._communications;
+            _current += revenue._current;
+            _reRated += revenue._reRated;
+        }
+
+    }
+
+    private final TariffPlan _plan;
+    private final Map<String, Revenue> _terminals;
+    private final Map<String, Revenue> _clients;
+    private final Revenue _total;
+
+    /**
+     * Re-rates the communications made by the given terminals.
+     *
+     * @param plan      The plan to price the communications with
+     * @param terminals The terminals, sorted by their key
+     * @param made      The rows of the finished communications made by every
+     *                  terminal
+     * @param stores    The communications made by every terminal
+     * @param clients   The clients, sorted by their key
+     */
+    ReRating(TariffPlan plan, Terminal[] terminals, int[][] made,
+      CommunicationStore[] stores, Collection<Client> clients) {
+        _plan = plan;
+        RateTable rates = plan.getRates();
+        Revenue[] revenues = new Revenue[terminals.length];
+        IntStream.range(0, terminals.length).parallel().forEach(i ->
+            revenues[i] = reRate(rates, terminals[i], made[i], stores[i]));
+
+        _terminals = new LinkedHashMap<String, Revenue>();
+        Map<String, Revenue> byClient = new HashMap<String, Revenue>();
+        for (int i = 0; i < terminals.length; i++) {
+            _terminals.put(revenues[i].getId(), revenues[i]);
+            byClient.computeIfAbsent(terminals[i].getClientId(), Revenue::new)
+                .add(revenues[i]);
+        }
+        _clients = new TreeMap<String, Revenue>(
+            String.CASE_INSENSITIVE_ORDER);
+        _total = new Revenue(null);
+        for (Client client : clients) {
+            Revenue revenue = byClient.get(client.getId());
+            if (revenue == null) {
+                revenue = new Revenue(client.getId());
+            }
+            _clients.put(client.getId(), revenue);
+            _total.add(revenue);
+        }
+    }
+
+    /**
+     * Re-rates the finished communications made by a terminal.
+     *
+     * @param rates    The rates of the new plan
+     * @param terminal The terminal
+     * @param made     The rows of the finished communications made by the
+     *                 terminal
+     * @param store    The communications made by the terminal
+     * @return The revenue of the terminal
+     */
+    private static Revenue reRate(RateTable rates, Terminal terminal,
+      int[] made, CommunicationStore store) {
+        Revenue revenue = new Revenue(terminal.getTerminalId());
+        int level = terminal.getOwner().getRateLevel();
+        FriendSet friends = terminal.getFriends();
+        for (int row : made) {
+            revenue._communications++;
+            revenue._current += store.getPrice(row);
+            revenue._reRated += rates.price(level, store.getRateType(row),
+                store.getUnits(row), friends.contains(store.getReceiver(row)));
+        }
+        return revenue;
+    }
+
+    /** @return The plan the communications were re-rated with */
+    public TariffPlan getTariffPlan() {
+        return _plan;
+    }
+
+    /**
+     * Gets the revenue of a terminal.
+     *
+     * @param id The key of the terminal
+     * @return The revenue, or null if the terminal was not re-rated
+     */
+    public Revenue getTerminalRevenue(String id) {
+        return _terminals.get(id);
+    }
+
+    /**
+     * Gets the revenue of a client.
+     *
+     * @param id The key of the client
+     * @return The revenue, or null if the client was not re-rated
+     */
+    public Revenue getClientRevenue(String id) {
+        return _clients.get(id);
+    }
+
+    /** @return The revenue of every terminal, sorted by their key */
+    public Collection<Revenue> getTerminalRevenues() {
+        return Collections.unmodifiableCollection(_terminals.values());
+    }
+
+    /** @return The revenue of every client, sorted by their key */
+    public Collection<Revenue> getClientRevenues() {
+        return Collections.unmodifiableCollection(_clients.values());
+    }
+
+    /**
+     * Gets the revenue of the whole network, whose key is null.
+     *
+     * @return The revenue of the network
+     */
+    public Revenue getTotalRevenue() {
+        return _total;
+    }
+
+}
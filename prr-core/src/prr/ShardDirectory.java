@@ -0,0 +1,107 @@
+package prr;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Tells where every communication of a network is kept, by its id: the shard
+ * of the terminal that made it, so that finding a communication by its id
+ * only locks that shard, and its row in the store of the shard. The network
+ * hands ids out in sequence, so the entries are kept in arrays indexed by
+ * id, in segments that are added as ids grow and never copied, and are read
+ * without locking.
+ * <p>
+ * An entry is written by its shard, under the lock of the shard, when the
+ * communication is added to it and whenever its row moves, so a view of the
+ * shard only holds communications that have an entry. Entries are read
+ * without that lock, so the row of an entry is checked once the shard is
+ * locked.
+ */
+class ShardDirectory {
+
+    /** Number of bits of an entry that tell its shard. */
+    private static final int SHARD_BITS =
+        Integer.numberOfTrailingZeros(NetworkShard.SHARDS);
+
+    /** Number of bits of an id that index its entry in its segment. */
+    private static final int SEGMENT_BITS = 16;
+
+    /** Number of ids of a segment. */
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    /** Reads and writes the entries of the segments. */
+    private static final VarHandle ENTRIES =
+        MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * The segments, whose entries are the row of every id shifted over the
+     * index of its shard, plus one, or 0 for ids that are not in any shard.
+     * The array is replaced by a copy whenever a segment is added.
+     */
+    private volatile int[][] _segments = new int[0][];
+
+    /**
+     * Records where a communication is kept.
+     *
+     * @param id    The id of the communication
+     * @param shard The index of the shard
+     * @param row   The row of the communication in the store of the shard
+     */
+    void put(int id, int shard, int row) {
+        ENTRIES.setRelease(segment(id >>> SEGMENT_BITS),
+            id & (SEGMENT_SIZE - 1), (row << SHARD_BITS | shard) + 1);
+    }
+
+    /**
+     * Gets where a communication is kept.
+     *
+     * @param id The id of the communication
+     * @return The entry of the communication, which {@link #shard(int)} and
+     *         {@link #row(int)} take apart, or -1 if no shard keeps it
+     */
+    int get(int id) {
+        int[][] segments = _segments;
+        int index = id >>> SEGMENT_BITS;
+        if (index >= segments.length || segments[index] == null) {
+            return -1;
+        }
+        return (int) ENTRIES.getAcquire(segments[index],
+            id & (SEGMENT_SIZE - 1)) - 1;
+    }
+
+    /**
+     * @param entry An entry of the directory
+     * @return The index of the shard of the entry
+     */
+    static int shard(int entry) {
+        return entry & (NetworkShard.SHARDS - 1);
+    }
+
+    /**
+     * @param entry An entry of the directory
+     * @return The row of the entry, as it was when the entry was written
+     */
+    static int row(int entry) {
+        return entry >>> SHARD_BITS;
+    }
+
+    private int[] segment(int index) {
+        int[][] segments = _segments;
+        if (index < segments.length && segments[index] != null) {
+            return segments[index];
+        }
+        synchronized (this) {
+            segments = _segments;
+            if (index < segments.length && segments[index] != null) {
+                return segments[index];
+            }
+            segments = Arrays.copyOf(segments,
+                Math.max(segments.length, index + 1));
+            segments[index] = new int[SEGMENT_SIZE];
+            _segments = segments;
+            return segments[index];
+        }
+    }
+
+}
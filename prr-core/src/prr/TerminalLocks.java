@@ -0,0 +1,93 @@
+package prr;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks over terminal keys. Every terminal key maps to one of a fixed
+ * number of locks, so that communications between different terminals can
+ * proceed at once without a lock per terminal. Both terminals of a
+ * communication are locked in the order of their stripes, so that two
+ * communications between the same terminals never deadlock.
+ */
+class TerminalLocks {
+
+    /** Default number of stripes, a power of two. */
+    static final int DEFAULT_STRIPES = 256;
+
+    /** The locks, one per stripe. */
+    private final ReentrantLock[] _stripes;
+
+    /** Taken before the stripes by operations that must not interleave. */
+    private final ReentrantLock _serialLock;
+
+    /** Default constructor. */
+    TerminalLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes Number of stripes, rounded up to a power of two
+     */
+    TerminalLocks(int stripes) {
+        int length = 1;
+        while (length < stripes) {
+            length <<= 1;
+        }
+        _stripes = new ReentrantLock[length];
+        for (int i = 0; i < _stripes.length; i++) {
+            _stripes[i] = new ReentrantLock();
+        }
+        _serialLock = new ReentrantLock();
+    }
+
+    /**
+     * Gets the stripe of a terminal key.
+     *
+     * @param terminalId The key of the terminal
+     * @return The index of the stripe
+     */
+    private int stripe(String terminalId) {
+        int hash = terminalId.hashCode();
+        return (hash ^ (hash >>> 16)) & (_stripes.length - 1);
+    }
+
+    /**
+     * Locks the stripes of two terminals, lowest stripe first. The same
+     * terminal may be given twice.
+     *
+     * @param first  The key of a terminal
+     * @param second The key of the other terminal
+     * @param serial true to also keep out every other serial operation
+     */
+    void lock(String first, String second, boolean serial) {
+        if (serial) {
+            _serialLock.lock();
+        }
+        int firstStripe = stripe(first);
+        int secondStripe = stripe(second);
+        _stripes[Math.min(firstStripe, secondStripe)].lock();
+        if (firstStripe != secondStripe) {
+            _stripes[Math.max(firstStripe, secondStripe)].lock();
+        }
+    }
+
+    /**
+     * Unlocks the stripes of two terminals locked together.
+     *
+     * @param first  The key of a terminal
+     * @param second The key of the other terminal
+     * @param serial true if they were locked as a serial operation
+     */
+    void unlock(String first, String second, boolean serial) {
+        int firstStripe = stripe(first);
+        int secondStripe = stripe(second);
+        if (firstStripe != secondStripe) {
+            _stripes[Math.max(firstStripe, secondStripe)].unlock();
+        }
+        _stripes[Math.min(firstStripe, secondStripe)].unlock();
+        if (serial) {
+            _serialLock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package prr;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import prr.terminals.Terminal;
+
+/**
+ * A set of terminals of a network, kept as one bit per terminal number, so
+ * that adding or removing a terminal as it changes is setting a bit, and the
+ * terminals come out in the order of their keys by walking the set bits.
+ * Only the words up to the highest terminal of the set are walked, at 64
+ * terminal numbers per word, instead of every terminal of the network.
+ */
+class TerminalSet {
+
+    private final BitSet _numbers = new BitSet();
+
+    /**
+     * Adds a terminal to the set or removes it from the set.
+     *
+     * @param terminal The terminal
+     * @param member   true to add the terminal, false to remove it
+     */
+    void set(Terminal terminal, boolean member) {
+        _numbers.set(terminal.getNumber(), member);
+    }
+
+    /**
+     * Adds every terminal of another set to the set.
+     *
+     * @param terminals The other set
+     */
+    void addAll(TerminalSet terminals) {
+        _numbers.or(terminals._numbers);
+    }
+
+    /** @return The number of terminals of the set */
+    int size() {
+        return _numbers.cardinality();
+    }
+
+    /**
+     * Gets the terminals of the set.
+     *
+     * @param terminals The terminals of the network
+     * @return The terminals of the set, sorted by their key
+     */
+    List<Terminal> getTerminals(TerminalTable terminals) {
+        List<Terminal> members = new ArrayList<Terminal>(size());
+        for (int number = _numbers.nextSetBit(0); number >= 0;
+          number = _numbers.nextSetBit(number + 1)) {
+            members.add(terminals.get(number));
+        }
+        return members;
+    }
+
+}
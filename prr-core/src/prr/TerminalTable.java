@@ -0,0 +1,133 @@
+package prr;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import prr.terminals.Terminal;
+import prr.terminals.TerminalKeys;
+
+/**
+ * The terminals of a network, in a slot of their own indexed by the number
+ * of their key. Since there are only {@link TerminalKeys#CAPACITY} keys, a
+ * terminal is found by indexing an array instead of comparing keys, and the
+ * terminals are iterated in the order of their keys by walking the slots.
+ * <p>
+ * The slots are split into pages that are only allocated once a terminal
+ * falls in them, so that small networks stay small.
+ */
+class TerminalTable extends AbstractCollection<Terminal> {
+
+    /** Number of bits of a terminal number that index a slot in its page. */
+    private static final int PAGE_BITS = 10;
+
+    /** Number of slots of every page. */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /** The pages of slots, or null for pages without terminals. */
+    private final Terminal[][] _pages;
+
+    /** Number of terminals of the table. */
+    private int _size;
+
+    TerminalTable() {
+        _pages = new Terminal[(TerminalKeys.CAPACITY + PAGE_SIZE - 1) >>
+            PAGE_BITS][];
+        _size = 0;
+    }
+
+    /**
+     * Gets the terminal whose key spells the given number.
+     *
+     * @param number The number of the terminal, or -1 for invalid keys
+     * @return The terminal, or null if there is none with that number
+     */
+    Terminal get(int number) {
+        if (number < 0) {
+            return null;
+        }
+        Terminal[] page = _pages[number >> PAGE_BITS];
+        return page == null ? null : page[number & (PAGE_SIZE - 1)];
+    }
+
+    /**
+     * Adds a terminal to the table, replacing the one with the same key, if
+     * any.
+     *
+     * @param terminal The terminal to add
+     */
+    void put(Terminal terminal) {
+        int number = terminal.getNumber();
+        Terminal[] page = _pages[number >> PAGE_BITS];
+        if (page == null) {
+            page = new Terminal[PAGE_SIZE];
+            _pages[number >> PAGE_BITS] = page;
+        }
+        if (page[number & (PAGE_SIZE - 1)] == null) {
+            _size++;
+        }
+        page[number & (PAGE_SIZE - 1)] = terminal;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Iterates the terminals in the order of their keys.
+     *
+     * @return An iterator over the terminals
+     */
+    @Override
+    public Iterator<Terminal> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Iterates the terminals in the order of their keys, starting at a given
+     * number. Only the slots from that number on are walked.
+     *
+     * @param from The number of the first slot to look at
+     * @return An iterator over the terminals whose number is not less than
+     *         the given one
+     */
+    Iterator<Terminal> iterator(int from) {
+        return new Iterator<Terminal>() {
+
+            /** Number of the slot to look at next. */
+            private int _next = advance(Math.max(from, 0));
+
+            private int advance(int number) {
+                while (number < TerminalKeys.CAPACITY) {
+                    Terminal[] page = _pages[number >> PAGE_BITS];
+                    if (page == null) {
+                        number = (number | (PAGE_SIZE - 1)) + 1;
+                    } else if (page[number & (PAGE_SIZE - 1)] == null) {
+                        number++;
+                    } else {
+                        break;
+                    }
+                }
+                return number;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return _next < TerminalKeys.CAPACITY;
+            }
+
+            @Override
+            public Terminal next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Terminal terminal = get(_next);
+                _next = advance(_next + 1);
+                return terminal;
+            }
+
+        };
+    }
+
+}
@@ -1,21 +1,24 @@
 package prr.clients;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.io.Serial;
 
+import prr.util.BalanceObserver;
+import prr.util.Money;
 import prr.util.Visitor;
 import prr.util.Visitable;
-import prr.communications.TextCommunication;
-import prr.communications.VideoCommunication;
-import prr.communications.VoiceCommunication;
 import prr.notifications.Notification;
 import prr.notifications.NotificationDeliveryMethod;
 import prr.tariffs.BasePlan;
+import prr.tariffs.RateTable;
 import prr.tariffs.TariffPlan;
 import prr.terminals.Terminal;
 
@@ -33,13 +36,14 @@ public class Client implements Serializable, Visitable {
     private boolean _receiveNotifications;
     private Set<Notification> _notifications;
     private NotificationDeliveryMethod _deliveryMethod;
+    private transient BalanceObserver _balanceObserver;
 
     public Client(String id, String name, int taxId) {
         _id = id;
         _name = name;
         _taxId = taxId;
         _terminals = new HashMap<String, Terminal>();
-        _level = new ClientNormalLevel(this, 0D, 0D, new BasePlan());
+        _level = new ClientNormalLevel(this, 0L, 0L, new BasePlan());
         _receiveNotifications = true;
         _notifications = new LinkedHashSet<Notification>();
         _deliveryMethod = new DefaultDeliveryMethod();
@@ -69,6 +73,10 @@ public class Client implements Serializable, Visitable {
         _terminals.put(terminal.getTerminalId(), terminal);
     }
 
+    public Collection<Terminal> getTerminals() {
+        return Collections.unmodifiableCollection(_terminals.values());
+    }
+
     public String getLevelType() {
         return _level.getLevelType();
     }
@@ -86,29 +94,98 @@ public class Client implements Serializable, Visitable {
         _deliveryMethod = deliveryMethod;
     }
 
+    public Collection<Notification> getNotifications() {
+        return Collections.unmodifiableCollection(_notifications);
+    }
+
+    public void restoreNotification(Notification notification) {
+        _notifications.add(notification);
+    }
+
     public Collection<Notification> readNotifications() {
-        Collection<Notification> notifications =
-            new LinkedHashSet<>(_notifications);
-        _notifications.clear();
-        return notifications;
+        synchronized (_notifications) {
+            Collection<Notification> notifications =
+                new LinkedHashSet<>(_notifications);
+            _notifications.clear();
+            return notifications;
+        }
     }
 
     public void notify(Notification notification) {
         if (hasNotificationsEnabled()) {
-            _deliveryMethod.deliver(notification);
+            // terminals of other clients notify this one while their own
+            // communications are being made, so the notifications have a
+            // lock of their own
+            synchronized (_notifications) {
+                _deliveryMethod.deliver(notification);
+            }
         }
     }
 
-    public double getPayments() {
+    /** @return The payments of the client, in cents */
+    public long getPayments() {
         return _level.getPayments();
     }
 
-    public double getDebts() {
+    /** @return The debts of the client, in cents */
+    public long getDebts() {
         return _level.getDebts();
     }
 
-    public void updateBalance(double delta) {
+    public void setBalanceObserver(BalanceObserver balanceObserver) {
+        _balanceObserver = balanceObserver;
+    }
+
+    /**
+     * Updates the balance of the client.
+     *
+     * @param delta The amount paid, in cents, or minus the amount owed
+     */
+    public void updateBalance(long delta) {
         _level.updateBalance(delta);
+        if (_balanceObserver != null) {
+            _balanceObserver.balanceUpdated(this, Math.max(delta, 0L), -delta);
+        }
+    }
+
+    public int getNumberOfConsecutiveTextCommunications() {
+        return _level.getNumberOfConsecutiveTextCommunications();
+    }
+
+    public int getNumberOfConsecutiveVideoCommunications() {
+        return _level.getNumberOfConsecutiveVideoCommunications();
+    }
+
+    /**
+     * Restores the level of the client, and everything the level keeps track
+     * of, as it was when the client was saved.
+     *
+     * @param levelType                              The type of the level
+     * @param payments                               The payments of the
+     *                                               client, in cents
+     * @param debts                                  The debts of the client,
+     *                                               in cents
+     * @param numberOfConsecutiveTextCommunications  The number of consecutive
+     *                                               text communications
+     * @param numberOfConsecutiveVideoCommunications The number of consecutive
+     *                                               video communications
+     * @param plan                                   The tariff plan
+     * @throws IllegalArgumentException if the level type is unknown
+     */
+    public void restoreLevel(String levelType, long payments, long debts,
+      int numberOfConsecutiveTextCommunications,
+      int numberOfConsecutiveVideoCommunications, TariffPlan plan) {
+        _level = switch (levelType) {
+            case "NORMAL" -> new ClientNormalLevel(this, payments, debts, plan);
+            case "GOLD" -> new ClientGoldLevel(this, payments, debts, plan);
+            case "PLATINUM" ->
+                new ClientPlatinumLevel(this, payments, debts, plan);
+            default -> throw new IllegalArgumentException(levelType);
+        };
+        _level._numberOfConsecutiveTextCommunications =
+            numberOfConsecutiveTextCommunications;
+        _level._numberOfConsecutiveVideoCommunications =
+            numberOfConsecutiveVideoCommunications;
     }
 
     public void resetNumberOfConsecutiveCommunications() {
@@ -131,16 +208,28 @@ public class Client implements Serializable, Visitable {
         _level.setTariffPlan(plan);
     }
 
-    public double computePrice(TextCommunication communication) {
-        return _level.computePrice(communication);
-    }
-
-    public double computePrice(VoiceCommunication communication) {
-        return _level.computePrice(communication);
+    /**
+     * Gets the level of the client in the rates of its tariff plan.
+     *
+     * @return One of {@link RateTable#NORMAL}, {@link RateTable#GOLD} and
+     *         {@link RateTable#PLATINUM}
+     */
+    public int getRateLevel() {
+        return _level.getRateLevel();
     }
 
-    public double computePrice(VideoCommunication communication) {
-        return _level.computePrice(communication);
+    /**
+     * Computes the price the client pays for a communication, without
+     * changing the client or its tariff plan.
+     *
+     * @param type    The type of the communication, as in {@link RateTable}
+     * @param units   The units of the communication
+     * @param friends true if the terminals are friends, false otherwise
+     * @return The price of the communication, in cents
+     */
+    public long computePrice(int type, int units, boolean friends) {
+        return _level.getTariffPlan().getRates().price(_level.getRateLevel(),
+            type, units, friends);
     }
 
     public void verifyLevelUpdateConditions(boolean hasPayed) {
@@ -170,16 +259,36 @@ public class Client implements Serializable, Visitable {
         @Serial
         private static final long serialVersionUID = 202210150052L;
 
+        /** The payments of the client, in cents. */
+        private long _paymentCents;
+
+        /** The debts of the client, in cents. */
+        private long _debtCents;
+
+        /**
+         * The payments of levels serialized by earlier versions, in units,
+         * which are moved to {@link #_paymentCents} once the level is read.
+         * It stays serializable so that those streams can still be read, but
+         * it is always zero otherwise; networks are saved as snapshots,
+         * which don't have it.
+         */
         private double _payments;
+
+        /**
+         * The debts of levels serialized by earlier versions, in units,
+         * which are moved to {@link #_debtCents} once the level is read.
+         * Like {@link #_payments}, it is always zero otherwise.
+         */
         private double _debts;
+
         private int _numberOfConsecutiveTextCommunications;
         private int _numberOfConsecutiveVideoCommunications;
         private TariffPlan _plan;
 
-        public Level(double payments, double debts,
+        public Level(long payments, long debts,
           TariffPlan plan) {
-            _payments = payments;
-            _debts = debts;
+            _paymentCents = payments;
+            _debtCents = debts;
             _numberOfConsecutiveTextCommunications = 0;
             _numberOfConsecutiveVideoCommunications = 0;
             _plan = plan;
@@ -195,25 +304,21 @@ public class Client implements Serializable, Visitable {
 
         protected abstract String getLevelType();
 
-        protected double getPayments() {
-            return _payments;
+        protected long getPayments() {
+            return _paymentCents;
         }
 
-        protected double getDebts() {
-            return _debts;
+        protected long getDebts() {
+            return _debtCents;
         }
 
-        protected double getBalance() {
+        protected long getBalance() {
             return getPayments() - getDebts();
         }
 
-        private void updateBalance(double delta) {
-            if (delta < 0) {
-                _debts += (delta * -1);
-            } else {
-                _debts -= delta;
-                _payments += delta;
-            }
+        private void updateBalance(long delta) {
+            _debtCents -= delta;
+            _paymentCents += Math.max(delta, 0L);
         }
 
         protected int getNumberOfConsecutiveTextCommunications() {
@@ -247,14 +352,32 @@ public class Client implements Serializable, Visitable {
             _plan = plan;
         }
 
-        protected abstract double computePrice(TextCommunication communication);
-
-        protected abstract double computePrice(VoiceCommunication communication);
-
-        protected abstract double computePrice(VideoCommunication communication);
+        protected abstract int getRateLevel();
 
         protected abstract void verifyLevelUpdateConditions(boolean hasPayed);
 
+        /**
+         * Restores a level from a serialized stream, converting the payments
+         * and debts of levels serialized by earlier versions into cents.
+         *
+         * @param in The stream to read the level from
+         * @throws IOException            if there is an error reading the
+         *                                stream
+         * @throws ClassNotFoundException if the class of a serialized object
+         *                                cannot be found
+         */
+        @Serial
+        private void readObject(ObjectInputStream in)
+          throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            if (_payments != 0D || _debts != 0D) {
+                _paymentCents = Money.fromUnits(_payments);
+                _debtCents = Money.fromUnits(_debts);
+                _payments = 0D;
+                _debts = 0D;
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,122 @@
+package prr.clients;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Index of the clients with debts, sorted by decreasing debts and then by
+ * their case-insensitive key. The index must be updated every time the debts
+ * of a client change.
+ */
+public class ClientDebtIndex {
+
+    private NavigableSet<Entry> _entries;
+    private Map<Client, Entry> _clientEntries;
+
+    public ClientDebtIndex() {
+        _entries = new TreeSet<Entry>();
+        _clientEntries = new HashMap<Client, Entry>();
+    }
+
+    /**
+     * Moves a client to the position matching its current debts, removing it
+     * from the index if it no longer has any debts.
+     *
+     * @param client The client whose debts changed
+     */
+    public void update(Client client) {
+        Entry entry = _clientEntries.remove(client);
+        if (entry != null) {
+            _entries.remove(entry);
+        }
+        if (client.getDebts() > 0L) {
+            entry = new Entry(client, client.getDebts());
+            _entries.add(entry);
+            _clientEntries.put(client, entry);
+        }
+    }
+
+    public int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Gets the clients with the highest debts.
+     *
+     * @param limit The maximum number of clients to get
+     * @return The clients with debts sorted by decreasing debts on
+     * a {@link Collection}
+     */
+    public Collection<Client> getClients(int limit) {
+        List<Client> clients =
+            new ArrayList<Client>(Math.min(limit, _entries.size()));
+        for (Entry entry : _entries) {
+            if (clients.size() == limit) {
+                break;
+            }
+            clients.add(entry.getClient());
+        }
+        return Collections.unmodifiableCollection(clients);
+    }
+
+    /**
+     * Merges the clients with the highest debts of many indexes, as given by
+     * {@link #getClients(int)}, into those with the highest debts of them
+     * all.
+     *
+     * @param indexed The clients of every index
+     * @param limit   The maximum number of clients to get
+     * @return The clients with debts sorted by decreasing debts on
+     * a {@link Collection}
+     */
+    public static Collection<Client> merge(
+      Collection<Collection<Client>> indexed, int limit) {
+        List<Client> clients = new ArrayList<Client>();
+        indexed.forEach(clients::addAll);
+        clients.sort((a, b) -> compare(a, a.getDebts(), b, b.getDebts()));
+        return Collections.unmodifiableCollection(
+            clients.subList(0, Math.min(limit, clients.size())));
+    }
+
+    /**
+     * Compares two clients by decreasing debts and then by their
+     * case-insensitive key.
+     */
+    private static int compare(Client client, long debts, Client other,
+      long otherDebts) {
+        int comparison = Long.compare(otherDebts, debts);
+        if (comparison != 0) {
+            return comparison;
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(client.getId(),
+            other.getId());
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final Client _client;
+        private final long _debts;
+
+        private Entry(Client client, long debts) {
+            _client = client;
+            _debts = debts;
+        }
+
+        private Client getClient() {
+            return _client;
+        }
+
+        @Override
+        public int compareTo(Entry entry) {
+            return compare(_client, _debts, entry._client, entry._debts);
+        }
+
+    }
+
+}
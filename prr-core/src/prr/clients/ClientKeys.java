@@ -0,0 +1,46 @@
+package prr.clients;
+
+/**
+ * Client keys, which are the same key when they only differ by their case.
+ * A key is folded into the one string that every key matching it folds into,
+ * so that clients can be looked up by hashing instead of comparing keys char
+ * by char.
+ */
+public final class ClientKeys {
+
+    private ClientKeys() {
+        // static methods only
+    }
+
+    /**
+     * Folds the case of a client key. Two keys fold into the same string if
+     * and only if {@link String#CASE_INSENSITIVE_ORDER} finds them equal.
+     *
+     * @param id The client key
+     * @return The folded key, which is the key itself if it is already
+     *         folded
+     */
+    public static String fold(String id) {
+        int length = id.length();
+        int i = 0;
+        while (i < length && fold(id.charAt(i)) == id.charAt(i)) {
+            i++;
+        }
+        if (i == length) {
+            return id;
+        }
+        char[] folded = id.toCharArray();
+        for (; i < length; i++) {
+            folded[i] = fold(folded[i]);
+        }
+        return new String(folded);
+    }
+
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+}
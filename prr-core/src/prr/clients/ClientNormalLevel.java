@@ -2,10 +2,9 @@ package prr.clients;
 
 import java.io.Serial;
 
-import prr.communications.TextCommunication;
-import prr.communications.VideoCommunication;
-import prr.communications.VoiceCommunication;
+import prr.tariffs.RateTable;
 import prr.tariffs.TariffPlan;
+import prr.util.Money;
 
 public class ClientNormalLevel extends Client.Level {
 
@@ -13,7 +12,7 @@ public class ClientNormalLevel extends Client.Level {
     @Serial
     private static final long serialVersionUID = 202210192342L;
 
-    public ClientNormalLevel(Client client, double payments, double debts,
+    public ClientNormalLevel(Client client, long payments, long debts,
       TariffPlan plan) {
         client.super(payments, debts, plan);
     }
@@ -24,18 +23,8 @@ public class ClientNormalLevel extends Client.Level {
     }
 
     @Override
-    public double computePrice(TextCommunication communication) {
-        return getTariffPlan().computePrice(this, communication);
-    }
-
-    @Override
-    public double computePrice(VoiceCommunication communication) {
-        return getTariffPlan().computePrice(this, communication);
-    }
-
-    @Override
-    public double computePrice(VideoCommunication communication) {
-        return getTariffPlan().computePrice(this, communication);
+    protected int getRateLevel() {
+        return RateTable.NORMAL;
     }
 
     @Override
@@ -43,7 +32,7 @@ public class ClientNormalLevel extends Client.Level {
         if (!hasPayed) {
             return;
         }
-        if (getBalance() > 500D) {
+        if (getBalance() > Money.of(500)) {
             updateLevel(new ClientGoldLevel(getClient(), getPayments(),
                 getDebts(), getTariffPlan()));
         }
@@ -2,9 +2,7 @@ package prr.clients;
 
 import java.io.Serial;
 
-import prr.communications.TextCommunication;
-import prr.communications.VideoCommunication;
-import prr.communications.VoiceCommunication;
+import prr.tariffs.RateTable;
 import prr.tariffs.TariffPlan;
 
 public class ClientPlatinumLevel extends Client.Level {
@@ -13,7 +11,7 @@ public class ClientPlatinumLevel extends Client.Level {
     @Serial
     private static final long serialVersionUID = 202210192343L;
 
-    public ClientPlatinumLevel(Client client, double payments, double debts,
+    public ClientPlatinumLevel(Client client, long payments, long debts,
       TariffPlan plan) {
         client.super(payments, debts, plan);
     }
@@ -24,18 +22,8 @@ public class ClientPlatinumLevel extends Client.Level {
     }
 
     @Override
-    public double computePrice(TextCommunication communication) {
-        return getTariffPlan().computePrice(this, communication);
-    }
-
-    @Override
-    public double computePrice(VoiceCommunication communication) {
-        return getTariffPlan().computePrice(this, communication);
-    }
-
-    @Override
-    public double computePrice(VideoCommunication communication) {
-        return getTariffPlan().computePrice(this, communication);
+    protected int getRateLevel() {
+        return RateTable.PLATINUM;
     }
 
     @Override
@@ -43,7 +31,7 @@ public class ClientPlatinumLevel extends Client.Level {
         if (hasPayed) {
             return;
         }
-        if (getBalance() < 0D) {
+        if (getBalance() < 0L) {
             updateLevel(new ClientNormalLevel(getClient(), getPayments(),
                 getDebts(), getTariffPlan()));
         } else if (getNumberOfConsecutiveTextCommunications() == 2) {
@@ -1,8 +1,11 @@
 package prr.communications;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.io.Serial;
 
+import prr.util.Money;
 import prr.util.Visitor;
 import prr.util.Visitable;
 import prr.terminals.Terminal;
@@ -17,6 +20,14 @@ public abstract class Communication implements Serializable, Visitable {
     private Terminal _terminalReceiver;
     private Terminal _terminalSender;
     private boolean _isOngoing;
+
+    /** The price of the communication, in cents. */
+    private long _priceCents;
+
+    /**
+     * The price of communications serialized by earlier versions, which is
+     * moved to {@link #_priceCents} once the communication is read.
+     */
     private double _price;
     private boolean _isPaid;
 
@@ -26,13 +37,34 @@ public abstract class Communication implements Serializable, Visitable {
         _terminalReceiver = terminalReceiver;
         _terminalSender = terminalSender;
         _isOngoing = isOngoing;
-        _price = 0D;
+        _priceCents = 0L;
         _isPaid = false;
         estabilishCommunication();
     }
 
+    /**
+     * Restores a communication as it was when it was saved, without
+     * establishing it again between its terminals.
+     */
+    protected Communication(int id, Terminal terminalReceiver,
+      Terminal terminalSender, boolean isOngoing, long price,
+      boolean isPaid) {
+        _id = id;
+        _terminalReceiver = terminalReceiver;
+        _terminalSender = terminalSender;
+        _isOngoing = isOngoing;
+        _priceCents = price;
+        _isPaid = isPaid;
+    }
+
     public abstract String getCommunicationType();
 
+    /**
+     * @return The type of the communication in the rates of a tariff plan,
+     *         as in {@link prr.tariffs.RateTable}
+     */
+    public abstract int getRateType();
+
     public int getId() {
         return _id;
     }
@@ -63,29 +95,44 @@ public abstract class Communication implements Serializable, Visitable {
 
     public abstract int getUnits();
 
-    public double getPrice() {
-        return _price;
+    /** @return The price of the communication, in cents */
+    public long getPrice() {
+        return _priceCents;
     }
 
-    protected void setPrice(double price) {
-        _price = price;
+    protected void setPrice(long price) {
+        _priceCents = price;
     }
 
     public boolean isPaid() {
         return _isPaid;
     }
 
-    public double pay() {
-        _isPaid = true;
-        return _price;
-    }
-
     protected abstract void estabilishCommunication();
 
-    protected abstract double computePrice();
+    protected abstract long computePrice();
 
     public String accept(Visitor visitor) {
         return visitor.visit(this);
     }
 
+    /**
+     * Restores a communication from a serialized stream, converting the price
+     * of communications serialized by earlier versions into cents.
+     *
+     * @param in The stream to read the communication from
+     * @throws IOException            if there is an error reading the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *                                cannot be found
+     */
+    @Serial
+    private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (_price != 0D) {
+            _priceCents = Money.fromUnits(_price);
+            _price = 0D;
+        }
+    }
+
 }
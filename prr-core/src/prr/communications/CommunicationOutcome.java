@@ -0,0 +1,40 @@
+package prr.communications;
+
+/**
+ * Outcome of an attempt to make a communication. Attempts that fail report
+ * why through their outcome instead of throwing, so that they don't pay for
+ * creating and unwinding an exception.
+ */
+public enum CommunicationOutcome {
+
+    /** The communication was made. */
+    MADE,
+
+    /** The sending terminal is not present in the network. */
+    UNKNOWN_SENDER,
+
+    /** The receiving terminal is not present in the network. */
+    UNKNOWN_RECEIVER,
+
+    /** The terminal tried to call itself. */
+    INVALID_COMMUNICATION,
+
+    /** The sending terminal is off or busy, so nothing was attempted. */
+    ORIGIN_UNAVAILABLE,
+
+    /** The receiving terminal is off. */
+    DESTINATION_OFF,
+
+    /** The receiving terminal is busy. */
+    DESTINATION_BUSY,
+
+    /** The receiving terminal is silent. */
+    DESTINATION_SILENT,
+
+    /** The sending terminal cannot make video calls. */
+    UNSUPPORTED_AT_ORIGIN,
+
+    /** The receiving terminal cannot take video calls. */
+    UNSUPPORTED_AT_DESTINATION;
+
+}
@@ -18,6 +18,13 @@ public abstract class InteractiveCommunication extends Communication {
         _duration = 0;
     }
 
+    protected InteractiveCommunication(int id, Terminal terminalReceiver,
+      Terminal terminalSender, boolean isOngoing, int duration, long price,
+      boolean isPaid) {
+        super(id, terminalReceiver, terminalSender, isOngoing, price, isPaid);
+        _duration = duration;
+    }
+
     @Override
     public int getUnits() {
         return _duration;
@@ -46,6 +53,6 @@ public abstract class InteractiveCommunication extends Communication {
         setUnits(duration);
     }
 
-    public abstract double finishCommunication(int duration);
+    public abstract long finishCommunication(int duration);
 
 }
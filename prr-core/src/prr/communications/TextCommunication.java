@@ -1,8 +1,12 @@
 package prr.communications;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
+import java.util.function.Supplier;
 
 import prr.clients.Client;
+import prr.tariffs.RateTable;
 import prr.terminals.Terminal;
 
 public class TextCommunication extends Communication {
@@ -11,23 +15,101 @@ public class TextCommunication extends Communication {
     @Serial
     private static final long serialVersionUID = 202210190315L;
 
+    /** The message, or null until it is loaded. */
     private String _message;
 
+    /** The length of the message, known even before it is loaded. */
+    private transient int _length;
+
+    /** Loads the message when it is first asked for, if it isn't loaded. */
+    private transient Supplier<String> _messageLoader;
+
     public TextCommunication(String message, int id,
       Terminal terminalReceiver, Terminal terminalSender) {
         super(id, terminalReceiver, terminalSender, false);
         _message = message;
+        _length = message.length();
         computePrice();
     }
 
+    private TextCommunication(String message, int length,
+      Supplier<String> messageLoader, int id, Terminal terminalReceiver,
+      Terminal terminalSender, long price, boolean isPaid) {
+        super(id, terminalReceiver, terminalSender, false, price, isPaid);
+        _message = message;
+        _length = length;
+        _messageLoader = messageLoader;
+    }
+
+    public static TextCommunication restore(String message, int id,
+      Terminal terminalReceiver, Terminal terminalSender, long price,
+      boolean isPaid) {
+        return restore(message, message.length(), id, terminalReceiver,
+            terminalSender, price, isPaid);
+    }
+
+    /**
+     * Restores a text communication whose message is loaded already, taking
+     * the length of the message as it was stored, so that restoring it
+     * doesn't have to read the message.
+     *
+     * @param message          The message
+     * @param length           The length of the message
+     * @param id               The key of the communication
+     * @param terminalReceiver The receiving terminal
+     * @param terminalSender   The sending terminal
+     * @param price            The price of the communication
+     * @param isPaid           true if the communication was paid
+     * @return The communication
+     */
+    public static TextCommunication restore(String message, int length,
+      int id, Terminal terminalReceiver, Terminal terminalSender, long price,
+      boolean isPaid) {
+        return new TextCommunication(message, length, null, id,
+            terminalReceiver, terminalSender, price, isPaid);
+    }
+
+    /**
+     * Restores a text communication whose message is only loaded when it is
+     * first asked for.
+     *
+     * @param length           The length of the message
+     * @param messageLoader    Loads the message
+     * @param id               The key of the communication
+     * @param terminalReceiver The receiving terminal
+     * @param terminalSender   The sending terminal
+     * @param price            The price of the communication
+     * @param isPaid           true if the communication was paid
+     * @return The communication
+     */
+    public static TextCommunication restore(int length,
+      Supplier<String> messageLoader, int id, Terminal terminalReceiver,
+      Terminal terminalSender, long price, boolean isPaid) {
+        return new TextCommunication(null, length, messageLoader, id,
+            terminalReceiver, terminalSender, price, isPaid);
+    }
+
     @Override
     public String getCommunicationType() {
         return "TEXT";
     }
 
+    @Override
+    public int getRateType() {
+        return RateTable.TEXT;
+    }
+
+    public String getMessage() {
+        if (_message == null) {
+            _message = _messageLoader.get();
+            _messageLoader = null;
+        }
+        return _message;
+    }
+
     @Override
     public int getUnits() {
-        return _message.length();
+        return _length;
     }
 
     @Override
@@ -39,15 +121,31 @@ public class TextCommunication extends Communication {
     }
 
     @Override
-    protected double computePrice() {
+    protected long computePrice() {
         Client client = getTerminalSender().getOwner();
         boolean areFriends =
             getTerminalSender().isFriend(getTerminalReceiver());
-        client.getTariffPlan().setFriendship(areFriends);
-        double price = client.computePrice(this);
+        long price = client.computePrice(getRateType(), getUnits(),
+            areFriends);
         setPrice(price);
-        getTerminalSender().updateBalance(price * -1);
+        getTerminalSender().updateBalance(-price);
         return price;
     }
 
+    /**
+     * Restores a text communication from a serialized stream, working out
+     * the length of its message.
+     *
+     * @param in The stream to read the communication from
+     * @throws IOException            if there is an error reading the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *                                cannot be found
+     */
+    @Serial
+    private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        _length = _message.length();
+    }
+
 }
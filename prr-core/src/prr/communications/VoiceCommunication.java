@@ -3,6 +3,7 @@ package prr.communications;
 import java.io.Serial;
 
 import prr.clients.Client;
+import prr.tariffs.RateTable;
 import prr.terminals.Terminal;
 
 public class VoiceCommunication extends InteractiveCommunication {
@@ -16,13 +17,32 @@ public class VoiceCommunication extends InteractiveCommunication {
         super(id, terminalReceiver, terminalSender);
     }
 
+    private VoiceCommunication(int id, Terminal terminalReceiver,
+      Terminal terminalSender, boolean isOngoing, int duration, long price,
+      boolean isPaid) {
+        super(id, terminalReceiver, terminalSender, isOngoing, duration, price,
+            isPaid);
+    }
+
+    public static VoiceCommunication restore(int id,
+      Terminal terminalReceiver, Terminal terminalSender, boolean isOngoing,
+      int duration, long price, boolean isPaid) {
+        return new VoiceCommunication(id, terminalReceiver, terminalSender,
+            isOngoing, duration, price, isPaid);
+    }
+
     @Override
     public String getCommunicationType() {
         return "VOICE";
     }
 
     @Override
-    public double finishCommunication(int duration) {
+    public int getRateType() {
+        return RateTable.VOICE;
+    }
+
+    @Override
+    public long finishCommunication(int duration) {
         finishInteractiveCommunication(duration);
         getTerminalSender().getOwner()
             .resetNumberOfConsecutiveCommunications();
@@ -30,14 +50,14 @@ public class VoiceCommunication extends InteractiveCommunication {
     }
 
     @Override
-    protected double computePrice() {
+    protected long computePrice() {
         Client client = getTerminalSender().getOwner();
         boolean areFriends =
             getTerminalSender().isFriend(getTerminalReceiver());
-        client.getTariffPlan().setFriendship(areFriends);
-        double price = client.computePrice(this);
+        long price = client.computePrice(getRateType(), getUnits(),
+            areFriends);
         setPrice(price);
-        getTerminalSender().updateBalance(price * -1);
+        getTerminalSender().updateBalance(-price);
         return price;
     }
 
@@ -2,12 +2,7 @@ package prr.tariffs;
 
 import java.io.Serial;
 
-import prr.clients.ClientNormalLevel;
-import prr.clients.ClientGoldLevel;
-import prr.clients.ClientPlatinumLevel;
-import prr.communications.TextCommunication;
-import prr.communications.VideoCommunication;
-import prr.communications.VoiceCommunication;
+import prr.util.Money;
 
 public class BasePlan extends TariffPlan {
 
@@ -15,85 +10,25 @@ public class BasePlan extends TariffPlan {
     @Serial
     private static final long serialVersionUID = 202210192349L;
 
-    @Override
-    public double computePrice(ClientNormalLevel level,
-      TextCommunication communication) {
-        int units = communication.getUnits();
-        double price = 0D;
-
-        if (units < 50) {
-            price += 10D;
-        } else if (units < 100) {
-            price += 16D;
-        } else {
-            price += units * 2;
-        }
-
-        return price;
-    }
-
-    @Override
-    public double computePrice(ClientNormalLevel level,
-      VoiceCommunication communication) {
-        return 20D * communication.getUnits() * (isFriend() ? 0.50 : 1D);
-    }
-
-    @Override
-    public double computePrice(ClientNormalLevel level,
-      VideoCommunication communication) {
-        return 30D * communication.getUnits() * (isFriend() ? 0.50 : 1D);
-    }
-
-    @Override
-    public double computePrice(ClientGoldLevel level,
-      TextCommunication communication) {
-        int units = communication.getUnits();
-        double price = 0D;
-
-        if (units < 100) {
-            price += 10D;
-        } else {
-            price += units * 2;
-        }
-
-        return price;
-    }
-
-    @Override
-    public double computePrice(ClientGoldLevel level,
-      VoiceCommunication communication) {
-        return 10D * communication.getUnits() * (isFriend() ? 0.50 : 1D);
-    }
-
-    @Override
-    public double computePrice(ClientGoldLevel level,
-      VideoCommunication communication) {
-        return 20D * communication.getUnits() * (isFriend() ? 0.50 : 1D);
-    }
-
-    @Override
-    public double computePrice(ClientPlatinumLevel level,
-      TextCommunication communication) {
-        int units = communication.getUnits();
-        double price = 0D;
-
-        if (units >= 50) {
-            price += 4D;
-        }
-
-        return price;
-    }
-
-    @Override
-    public double computePrice(ClientPlatinumLevel level,
-      VoiceCommunication communication) {
-        return 10D * communication.getUnits() * (isFriend() ? 0.50 : 1D);
-    }
-
-    @Override
-    public double computePrice(ClientPlatinumLevel level,
-      VideoCommunication communication) {
-        return 10D * communication.getUnits() * (isFriend() ? 0.50 : 1D);
+    /**
+     * Texts cost 10 below 50 units for normal clients and below 100 units
+     * for gold clients, then 16 below 100 units for normal clients and 2 per
+     * unit past that; platinum clients only pay 4 from 50 units on. Friends
+     * pay half of voice and video communications.
+     */
+    private static final RateTable RATES = new RateTable(
+        new int[] { 50, 100, 50 },
+        new long[] { Money.of(10), Money.of(10), Money.of(0) },
+        new int[] { 100, 100, Integer.MAX_VALUE },
+        new long[] { Money.of(16), Money.of(10), Money.of(4) },
+        new long[] { Money.of(2), Money.of(2), Money.of(0) },
+        new long[] { Money.of(20), Money.of(10), Money.of(10) },
+        new long[] { Money.of(30), Money.of(20), Money.of(10) },
+        0.50);
+
+    @Override
+    public RateTable getRates() {
+        return RATES;
     }
 
 }
@@ -0,0 +1,138 @@
+package prr.tariffs;
+
+/**
+ * The rates of a tariff plan, precomputed into flat tables so that the price
+ * of a communication is a pure function of the level of the client, the type
+ * of the communication, its units and whether the terminals are friends.
+ * Prices and rates are in cents (see {@link prr.util.Money}), so pricing is
+ * exact integer arithmetic.
+ * <p>
+ * A table never changes once built, so it can be shared by every client of a
+ * plan and used from many threads at once, such as when re-rating the
+ * communications of a network in bulk. Pricing doesn't allocate.
+ * <p>
+ * Text communications cost a fixed price below a low limit of units, another
+ * fixed price below a high limit and a rate per unit from then on. Voice and
+ * video communications cost a rate per unit, reduced between friends.
+ */
+public final class RateTable {
+
+    /** Level of clients that are neither gold nor platinum. */
+    public static final int NORMAL = 0;
+
+    /** Level of gold clients. */
+    public static final int GOLD = 1;
+
+    /** Level of platinum clients. */
+    public static final int PLATINUM = 2;
+
+    /** Number of client levels. */
+    public static final int LEVELS = 3;
+
+    /** A text communication. */
+    public static final int TEXT = 0;
+
+    /** A voice communication. */
+    public static final int VOICE = 1;
+
+    /** A video communication. */
+    public static final int VIDEO = 2;
+
+    /** Limits of units of text communications, low and high per level. */
+    private final int[] _textLimits;
+
+    /** Fixed prices of text communications, low and high per level. */
+    private final long[] _textPrices;
+
+    /** Rates per unit of text communications past the high limit. */
+    private final long[] _textRates;
+
+    /**
+     * Rates per unit of voice and video communications, indexed by
+     * {@link #interactiveIndex(int, int, boolean)}.
+     */
+    private final long[] _interactiveRates;
+
+    /**
+     * Builds a table from the rates of every level, indexed by
+     * {@link #NORMAL}, {@link #GOLD} and {@link #PLATINUM}. Prices and rates
+     * are in cents.
+     *
+     * @param textLowLimits  Units below which texts cost the low price
+     * @param textLowPrices  Prices of texts below the low limit
+     * @param textHighLimits Units below which texts cost the high price
+     * @param textHighPrices Prices of texts below the high limit
+     * @param textRates      Rates per unit of texts past the high limit
+     * @param voiceRates     Rates per unit of voice communications
+     * @param videoRates     Rates per unit of video communications
+     * @param friendFactor   Factor of the rates of voice and video
+     *                       communications between friends, whose rates are
+     *                       rounded to the nearest cent
+     * @throws IllegalArgumentException if a level is missing
+     */
+    public RateTable(int[] textLowLimits, long[] textLowPrices,
+      int[] textHighLimits, long[] textHighPrices, long[] textRates,
+      long[] voiceRates, long[] videoRates, double friendFactor) {
+        if (textLowLimits.length != LEVELS || textLowPrices.length != LEVELS ||
+            textHighLimits.length != LEVELS ||
+            textHighPrices.length != LEVELS || textRates.length != LEVELS ||
+            voiceRates.length != LEVELS || videoRates.length != LEVELS) {
+            throw new IllegalArgumentException("rates for " + LEVELS +
+                " levels expected");
+        }
+        _textLimits = new int[2 * LEVELS];
+        _textPrices = new long[2 * LEVELS];
+        _textRates = textRates.clone();
+        _interactiveRates = new long[4 * LEVELS];
+        for (int level = 0; level < LEVELS; level++) {
+            _textLimits[2 * level] = textLowLimits[level];
+            _textLimits[2 * level + 1] = textHighLimits[level];
+            _textPrices[2 * level] = textLowPrices[level];
+            _textPrices[2 * level + 1] = textHighPrices[level];
+            _interactiveRates[interactiveIndex(level, VOICE, false)] =
+                voiceRates[level];
+            _interactiveRates[interactiveIndex(level, VOICE, true)] =
+                Math.round(voiceRates[level] * friendFactor);
+            _interactiveRates[interactiveIndex(level, VIDEO, false)] =
+                videoRates[level];
+            _interactiveRates[interactiveIndex(level, VIDEO, true)] =
+                Math.round(videoRates[level] * friendFactor);
+        }
+    }
+
+    private static int interactiveIndex(int level, int type,
+      boolean friends) {
+        return 4 * level + 2 * (type - VOICE) + (friends ? 1 : 0);
+    }
+
+    /**
+     * Computes the price of a communication.
+     *
+     * @param level   The level of the paying client
+     * @param type    The type of the communication
+     * @param units   The units of the communication
+     * @param friends true if the terminals are friends, false otherwise
+     * @return The price of the communication, in cents
+     * @throws IllegalArgumentException if the level or the type is unknown
+     */
+    public long price(int level, int type, int units, boolean friends) {
+        if (level < 0 || level >= LEVELS) {
+            throw new IllegalArgumentException("unknown level " + level);
+        }
+        if (type == TEXT) {
+            if (units < _textLimits[2 * level]) {
+                return _textPrices[2 * level];
+            }
+            if (units < _textLimits[2 * level + 1]) {
+                return _textPrices[2 * level + 1];
+            }
+            return units * _textRates[level];
+        }
+        if (type != VOICE && type != VIDEO) {
+            throw new IllegalArgumentException("unknown type " + type);
+        }
+        return units * _interactiveRates[interactiveIndex(level, type,
+            friends)];
+    }
+
+}
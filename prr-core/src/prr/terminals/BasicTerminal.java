@@ -2,10 +2,7 @@ package prr.terminals;
 
 import java.io.Serial;
 
-import prr.Network;
 import prr.clients.Client;
-import prr.exceptions.UnsupportedCommunicationAtOriginException;
-import prr.exceptions.UnsupportedCommunicationAtDestinationException;
 
 public class BasicTerminal extends Terminal {
 
@@ -23,15 +20,8 @@ public class BasicTerminal extends Terminal {
     }
 
     @Override
-    public void makeVideoCall(String terminalReceiverId, Network network)
-      throws UnsupportedCommunicationAtOriginException {
-        throw new UnsupportedCommunicationAtOriginException();
-    }
-
-    @Override
-    protected void receiveVideoCall(Terminal sender, Network network)
-      throws UnsupportedCommunicationAtDestinationException {
-        throw new UnsupportedCommunicationAtDestinationException();
+    public boolean supportsVideoCommunication() {
+        return false;
     }
 
 }
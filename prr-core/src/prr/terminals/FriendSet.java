@@ -0,0 +1,126 @@
+package prr.terminals;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The friends of a terminal, kept as the sorted numbers of their keys (see
+ * {@link TerminalKeys}). Checking a friend is a binary search over a few
+ * ints, and the friends take four bytes each instead of a tree node and a
+ * reference to the friend.
+ */
+public class FriendSet implements Serializable {
+
+    /** Serial number for serialization. */
+    @Serial
+    private static final long serialVersionUID = 202212110041L;
+
+    /** Shared by every set without friends. */
+    private static final int[] NO_FRIENDS = new int[0];
+
+    /** Number of friends a set holds the first time it grows. */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** The numbers of the friends, sorted, followed by unused slots. */
+    private int[] _numbers;
+
+    /** Number of friends. */
+    private int _size;
+
+    FriendSet() {
+        _numbers = NO_FRIENDS;
+        _size = 0;
+    }
+
+    /**
+     * Checks if a terminal is a friend.
+     *
+     * @param number The number of the terminal
+     * @return true if the terminal is a friend, false otherwise
+     */
+    public boolean contains(int number) {
+        return Arrays.binarySearch(_numbers, 0, _size, number) >= 0;
+    }
+
+    /** @return The number of friends */
+    public int size() {
+        return _size;
+    }
+
+    /** @return true if there are no friends, false otherwise */
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Gets a friend by its position, friends being sorted by their key.
+     *
+     * @param index The position of the friend
+     * @return The number of the friend
+     */
+    public int get(int index) {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return _numbers[index];
+    }
+
+    /**
+     * Adds a friend.
+     *
+     * @param number The number of the terminal
+     * @return true if the terminal wasn't a friend yet, false otherwise
+     */
+    boolean add(int number) {
+        int position = Arrays.binarySearch(_numbers, 0, _size, number);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (_size == _numbers.length) {
+            _numbers = Arrays.copyOf(_numbers,
+                Math.max(INITIAL_CAPACITY, _size * 2));
+        }
+        System.arraycopy(_numbers, position, _numbers, position + 1,
+            _size - position);
+        _numbers[position] = number;
+        _size++;
+        return true;
+    }
+
+    /**
+     * Removes a friend.
+     *
+     * @param number The number of the terminal
+     * @return true if the terminal was a friend, false otherwise
+     */
+    boolean remove(int number) {
+        int position = Arrays.binarySearch(_numbers, 0, _size, number);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(_numbers, position + 1, _numbers, position,
+            _size - position - 1);
+        _size--;
+        return true;
+    }
+
+    /**
+     * Lists the keys of the friends, sorted and separated by commas.
+     *
+     * @return The keys of the friends
+     */
+    public String toKeyList() {
+        StringBuilder keys =
+            new StringBuilder(_size * (TerminalKeys.LENGTH + 1));
+        for (int i = 0; i < _size; i++) {
+            if (i > 0) {
+                keys.append(',');
+            }
+            TerminalKeys.appendKey(keys, _numbers[i]);
+        }
+        return keys.toString();
+    }
+
+}
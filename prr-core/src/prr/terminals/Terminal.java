@@ -1,21 +1,26 @@
 package prr.terminals;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.io.Serial;
 
 import prr.Network;
+import prr.util.Money;
+import prr.util.TerminalObserver;
 import prr.util.Visitor;
 import prr.util.Visitable;
 import prr.clients.Client;
 import prr.communications.Communication;
+import prr.communications.CommunicationOutcome;
 import prr.communications.TextCommunication;
 import prr.communications.InteractiveCommunication;
+import prr.communications.VideoCommunication;
 import prr.communications.VoiceCommunication;
 import prr.notifications.Notification;
 import prr.exceptions.IllegalTerminalStatusException;
@@ -38,23 +43,67 @@ abstract public class Terminal implements Serializable, Visitable {
     private static final long serialVersionUID = 202208091753L;
 
     private final String _id;
+
+    /** The number spelled by the key of the terminal. */
+    private transient int _number;
+
     private Client _owner;
+
+    /** The payments of the terminal, in cents. */
+    private long _paymentCents;
+
+    /** The debts of the terminal, in cents. */
+    private long _debtCents;
+
+    /**
+     * The payments of terminals serialized by earlier versions, in units,
+     * which are moved to {@link #_paymentCents} once the terminal is read.
+     * It stays serializable so that those streams can still be read, but it
+     * is always zero otherwise; networks are saved as snapshots, which don't
+     * have it.
+     */
     private double _payments;
+
+    /**
+     * The debts of terminals serialized by earlier versions, in units, which
+     * are moved to {@link #_debtCents} once the terminal is read. Like
+     * {@link #_payments}, it is always zero otherwise.
+     */
     private double _debts;
+
     private InteractiveCommunication _ongoingCommunication;
+
+    /** Did the terminal take part in any communication? */
+    private boolean _isUsed;
+
+    /**
+     * The communications of terminals serialized by earlier versions, which
+     * are only read to tell whether the terminal was used. The network keeps
+     * the communications.
+     */
     private Map<Integer, Communication> _communications;
+    private FriendSet _friends;
+
+    /**
+     * The friends of terminals serialized by earlier versions, which are
+     * moved to {@link #_friends} once the terminal is read.
+     */
     private Map<String, Terminal> _terminalFriends;
     private Status _status;
     private List<Client> _clientsToNotify;
 
+    /** Observes the use and the balance of the terminal. */
+    private transient TerminalObserver _terminalObserver;
+
     public Terminal(String id, Client owner) {
         _id = id;
+        _number = TerminalKeys.toNumber(id);
         _owner = owner;
-        _payments = 0D;
-        _debts = 0D;
+        _paymentCents = 0L;
+        _debtCents = 0L;
         _ongoingCommunication = null;
-        _communications = new HashMap<Integer, Communication>();
-        _terminalFriends = new TreeMap<String, Terminal>();
+        _isUsed = false;
+        _friends = new FriendSet();
         _status = new TerminalIdleStatus(this);
         _clientsToNotify = new LinkedList<Client>();
         _owner.addTerminal(this);
@@ -66,6 +115,16 @@ abstract public class Terminal implements Serializable, Visitable {
         return _id;
     }
 
+    /**
+     * Gets the number spelled by the key of the terminal, which identifies it
+     * as well as its key and sorts the same way.
+     *
+     * @return The number of the terminal
+     */
+    public int getNumber() {
+        return _number;
+    }
+
     public String getClientId() {
         return _owner.getId();
     }
@@ -74,38 +133,50 @@ abstract public class Terminal implements Serializable, Visitable {
         return _owner;
     }
 
-    public double getPayments() {
-        return _payments;
+    /** @return The payments of the terminal, in cents */
+    public long getPayments() {
+        return _paymentCents;
     }
 
-    public double getDebts() {
-        return _debts;
+    /** @return The debts of the terminal, in cents */
+    public long getDebts() {
+        return _debtCents;
     }
 
-    public double getBalance() {
+    /** @return The payments minus the debts of the terminal, in cents */
+    public long getBalance() {
         return getPayments() - getDebts();
     }
 
-    public void updateBalance(double delta) {
-        if (delta < 0) {
-            _debts += (delta * -1);
-        } else {
-            _debts -= delta;
-            _payments += delta;
+    /**
+     * Updates the balance of the terminal and of its owner.
+     *
+     * @param delta The amount paid, in cents, or minus the amount owed
+     */
+    public void updateBalance(long delta) {
+        _debtCents -= delta;
+        _paymentCents += Math.max(delta, 0L);
+        if (_terminalObserver != null) {
+            _terminalObserver.terminalBalanceUpdated(this);
         }
         _owner.updateBalance(delta);
     }
 
+    public void setTerminalObserver(TerminalObserver terminalObserver) {
+        _terminalObserver = terminalObserver;
+    }
+
+    public void restoreBalance(long payments, long debts) {
+        _paymentCents = payments;
+        _debtCents = debts;
+    }
+
     public void performPayment(int communicationId, Network network)
       throws InvalidCommunicationException {
-        Communication communication = network.getCommunication(communicationId);
-        if (!this.equals(communication.getTerminalSender()) ||
-          communication.isOngoing() || communication.isPaid()) {
-            throw new InvalidCommunicationException();
-        }
-        double price = communication.pay();
+        long price = network.payCommunication(communicationId, this);
         updateBalance(price);
         getOwner().verifyLevelUpdateConditions(true);
+        network.getJournal().recordPayment(getTerminalId(), communicationId);
         network.changed();
     }
 
@@ -123,7 +194,7 @@ abstract public class Terminal implements Serializable, Visitable {
     }
 
     public boolean isUnused() {
-        return _communications.isEmpty();
+        return !_isUsed;
     }
 
     /**
@@ -146,91 +217,237 @@ abstract public class Terminal implements Serializable, Visitable {
         return _status.canStartCommunication();
     }
 
-    protected void assertTextCommunicationReception(Client clientToNotify)
-      throws UnreachableOffTerminalException {
-        _status.assertTextCommunicationReception(clientToNotify);
-    }
-
-    protected void assertInteractiveCommunicationReception(
-      Client clientToNotify) throws UnreachableOffTerminalException,
-      UnreachableBusyTerminalException, UnreachableSilentTerminalException {
-        _status.assertInteractiveCommunicationReception(clientToNotify);
-    }
+    /**
+     * Checks whether this terminal can make and receive video
+     * communications.
+     *
+     * @return true if it supports video communications, false otherwise
+     */
+    public abstract boolean supportsVideoCommunication();
 
+    /**
+     * Records that the terminal took part in a communication, which is kept
+     * by the network.
+     *
+     * @param communication The communication
+     */
     public void addCommunication(Communication communication) {
-        _communications.put(communication.getId(), communication);
+        if (!_isUsed) {
+            _isUsed = true;
+            if (_terminalObserver != null) {
+                _terminalObserver.terminalUsed(this);
+            }
+        }
     }
 
-    public double endOngoingCommunication(int duration, Network network) {
-        double communicationPrice = 0D;
+    public long endOngoingCommunication(int duration, Network network) {
+        long communicationPrice = 0L;
         if (canEndCurrentCommunication()) {
-            communicationPrice =
-                _ongoingCommunication.finishCommunication(duration);
+            InteractiveCommunication communication = _ongoingCommunication;
+            communicationPrice = communication.finishCommunication(duration);
+            network.archiveCommunication(communication);
             getOwner().verifyLevelUpdateConditions(false);
             network.changed();
         }
+        network.getJournal().recordCommunicationEnd(getTerminalId(), duration);
         return communicationPrice;
     }
 
     public void sendSMS(String terminalReceiverId, Network network,
       String message) throws UnknownTerminalKeyException,
       UnreachableOffTerminalException {
-        if (canStartCommunication()) {
-            network.changed();
-            Terminal receiver = network.getTerminal(terminalReceiverId);
-            receiver.receiveSMS(this, network, message);
+        switch (trySendSMS(terminalReceiverId, network, message)) {
+            case UNKNOWN_RECEIVER ->
+                throw new UnknownTerminalKeyException(terminalReceiverId);
+            case DESTINATION_OFF -> throw new UnreachableOffTerminalException();
+            default -> {
+                // sent, or not attempted since this terminal is unavailable
+            }
+        }
+    }
+
+    /**
+     * Sends a text communication like {@link #sendSMS(String, Network,
+     * String)}, reporting why it couldn't be sent instead of throwing.
+     *
+     * @param terminalReceiverId The key of the receiving terminal
+     * @param network            The network of the terminals
+     * @param message            The message to send
+     * @return The outcome of the communication
+     */
+    public CommunicationOutcome trySendSMS(String terminalReceiverId,
+      Network network, String message) {
+        CommunicationOutcome outcome =
+            sendSMSTo(terminalReceiverId, network, message);
+        network.getJournal().recordTextCommunication(getTerminalId(),
+            terminalReceiverId, message);
+        return outcome;
+    }
+
+    private CommunicationOutcome sendSMSTo(String terminalReceiverId,
+      Network network, String message) {
+        if (!canStartCommunication()) {
+            return CommunicationOutcome.ORIGIN_UNAVAILABLE;
+        }
+        network.changed();
+        Terminal receiver = network.findTerminal(terminalReceiverId);
+        if (receiver == null) {
+            return CommunicationOutcome.UNKNOWN_RECEIVER;
         }
+        return receiver.receiveSMS(this, network, message);
     }
 
-    private void receiveSMS(Terminal sender, Network network,
-      String newMessage) throws UnreachableOffTerminalException {
-        assertTextCommunicationReception(sender.getOwner());
+    private CommunicationOutcome receiveSMS(Terminal sender, Network network,
+      String newMessage) {
+        CommunicationOutcome outcome =
+            _status.checkTextCommunicationReception(sender.getOwner());
+        if (outcome != CommunicationOutcome.MADE) {
+            return outcome;
+        }
         int newId = network.getNextCommunicationId();
         TextCommunication communication =
             new TextCommunication(newMessage, newId, this, sender);
         network.registerCommunication(communication);
         sender.getOwner().verifyLevelUpdateConditions(false);
+        return outcome;
     }
 
     public void makeVoiceCall(String terminalReceiverId, Network network)
       throws UnknownTerminalKeyException, UnreachableOffTerminalException,
       UnreachableBusyTerminalException, UnreachableSilentTerminalException,
       InvalidCommunicationException {
+        raiseInteractiveOutcome(tryMakeVoiceCall(terminalReceiverId, network),
+            terminalReceiverId);
+    }
+
+    /**
+     * Makes a voice call like {@link #makeVoiceCall(String, Network)},
+     * reporting why it couldn't be made instead of throwing.
+     *
+     * @param terminalReceiverId The key of the called terminal
+     * @param network            The network of the terminals
+     * @return The outcome of the call
+     */
+    public CommunicationOutcome tryMakeVoiceCall(String terminalReceiverId,
+      Network network) {
+        return tryMakeInteractiveCall("VOICE", terminalReceiverId, network);
+    }
+
+    public void makeVideoCall(String terminalReceiverId, Network network)
+      throws UnsupportedCommunicationAtOriginException,
+      UnsupportedCommunicationAtDestinationException,
+      UnknownTerminalKeyException, UnreachableOffTerminalException,
+      UnreachableBusyTerminalException, UnreachableSilentTerminalException,
+      InvalidCommunicationException {
+        CommunicationOutcome outcome =
+            tryMakeVideoCall(terminalReceiverId, network);
+        switch (outcome) {
+            case UNSUPPORTED_AT_ORIGIN ->
+                throw new UnsupportedCommunicationAtOriginException();
+            case UNSUPPORTED_AT_DESTINATION ->
+                throw new UnsupportedCommunicationAtDestinationException();
+            default -> raiseInteractiveOutcome(outcome, terminalReceiverId);
+        }
+    }
+
+    /**
+     * Makes a video call like {@link #makeVideoCall(String, Network)},
+     * reporting why it couldn't be made instead of throwing.
+     *
+     * @param terminalReceiverId The key of the called terminal
+     * @param network            The network of the terminals
+     * @return The outcome of the call
+     */
+    public CommunicationOutcome tryMakeVideoCall(String terminalReceiverId,
+      Network network) {
+        if (!supportsVideoCommunication()) {
+            return CommunicationOutcome.UNSUPPORTED_AT_ORIGIN;
+        }
+        return tryMakeInteractiveCall("VIDEO", terminalReceiverId, network);
+    }
+
+    private CommunicationOutcome tryMakeInteractiveCall(String type,
+      String terminalReceiverId, Network network) {
+        CommunicationOutcome outcome =
+            makeInteractiveCallTo(type, terminalReceiverId, network);
+        network.getJournal().recordInteractiveCommunication(type,
+            getTerminalId(), terminalReceiverId);
+        return outcome;
+    }
+
+    private CommunicationOutcome makeInteractiveCallTo(String type,
+      String terminalReceiverId, Network network) {
         if (terminalReceiverId.equals(getTerminalId())) {
-            throw new InvalidCommunicationException();
+            return CommunicationOutcome.INVALID_COMMUNICATION;
         }
-        if (canStartCommunication()) {
-            network.changed();
-            Terminal receiver = network.getTerminal(terminalReceiverId);
-            receiver.receiveVoiceCall(this, network);
+        if (!canStartCommunication()) {
+            return CommunicationOutcome.ORIGIN_UNAVAILABLE;
         }
+        network.changed();
+        Terminal receiver = network.findTerminal(terminalReceiverId);
+        if (receiver == null) {
+            return CommunicationOutcome.UNKNOWN_RECEIVER;
+        }
+        return receiver.receiveInteractiveCall(type, this, network);
     }
 
-    private void receiveVoiceCall(Terminal sender, Network network)
-      throws UnreachableOffTerminalException, UnreachableBusyTerminalException,
-      UnreachableSilentTerminalException {
-        assertInteractiveCommunicationReception(sender.getOwner());
+    private CommunicationOutcome receiveInteractiveCall(String type,
+      Terminal sender, Network network) {
+        if (type.equals("VIDEO") && !supportsVideoCommunication()) {
+            return CommunicationOutcome.UNSUPPORTED_AT_DESTINATION;
+        }
+        CommunicationOutcome outcome =
+            _status.checkInteractiveCommunicationReception(sender.getOwner());
+        if (outcome != CommunicationOutcome.MADE) {
+            return outcome;
+        }
         int newId = network.getNextCommunicationId();
-        VoiceCommunication communication =
+        InteractiveCommunication communication = type.equals("VIDEO") ?
+            new VideoCommunication(newId, this, sender) :
             new VoiceCommunication(newId, this, sender);
         network.registerCommunication(communication);
+        return outcome;
     }
 
-    public abstract void makeVideoCall(String terminalReceiverId,
-      Network network) throws UnsupportedCommunicationAtOriginException,
-      UnsupportedCommunicationAtDestinationException, UnknownTerminalKeyException,
-      UnreachableOffTerminalException, UnreachableBusyTerminalException,
-      UnreachableSilentTerminalException, InvalidCommunicationException;
-
-    protected abstract void receiveVideoCall(Terminal sender, Network network)
-      throws UnsupportedCommunicationAtDestinationException,
+    /**
+     * Throws the exception that reports the failed outcome of an interactive
+     * communication, if any.
+     *
+     * @param outcome            The outcome of the communication
+     * @param terminalReceiverId The key of the called terminal
+     */
+    private static void raiseInteractiveOutcome(CommunicationOutcome outcome,
+      String terminalReceiverId) throws UnknownTerminalKeyException,
       UnreachableOffTerminalException, UnreachableBusyTerminalException,
-      UnreachableSilentTerminalException;
+      UnreachableSilentTerminalException, InvalidCommunicationException {
+        switch (outcome) {
+            case UNKNOWN_RECEIVER ->
+                throw new UnknownTerminalKeyException(terminalReceiverId);
+            case INVALID_COMMUNICATION ->
+                throw new InvalidCommunicationException();
+            case DESTINATION_OFF -> throw new UnreachableOffTerminalException();
+            case DESTINATION_BUSY ->
+                throw new UnreachableBusyTerminalException();
+            case DESTINATION_SILENT ->
+                throw new UnreachableSilentTerminalException();
+            default -> {
+                // made, or not attempted since this terminal is unavailable
+            }
+        }
+    }
 
     protected void addToNotify(Client client) {
         _clientsToNotify.add(client);
     }
 
+    public List<Client> getClientsToNotify() {
+        return Collections.unmodifiableList(_clientsToNotify);
+    }
+
+    public void restoreClientsToNotify(Collection<Client> clients) {
+        _clientsToNotify.addAll(clients);
+    }
+
     protected void notifyAllClients(Notification notification) {
         for (Client client : _clientsToNotify) {
             client.notify(notification);
@@ -239,17 +456,24 @@ abstract public class Terminal implements Serializable, Visitable {
     }
 
     public String getFriendsIds() {
-        return _terminalFriends.keySet()
-                                .stream()
-                                .collect(Collectors.joining(","));
+        return _friends.toKeyList();
+    }
+
+    /**
+     * Gets the friends of this terminal, as the numbers of their keys.
+     *
+     * @return The friends of this terminal
+     */
+    public FriendSet getFriends() {
+        return _friends;
     }
 
     public boolean hasFriends() {
-        return !_terminalFriends.isEmpty();
+        return !_friends.isEmpty();
     }
 
     public boolean isFriend(Terminal terminal) {
-        return _terminalFriends.containsKey(terminal.getTerminalId());
+        return _friends.contains(terminal.getNumber());
     }
 
     public void addFriend(String terminalFriendId, Network network)
@@ -259,7 +483,9 @@ abstract public class Terminal implements Serializable, Visitable {
           this.isFriend(terminalFriend)) {
             throw new InvalidFriendException();
         }
-        _terminalFriends.put(terminalFriendId, terminalFriend);
+        _friends.add(terminalFriend.getNumber());
+        network.getJournal().recordFriendAddition(getTerminalId(),
+            terminalFriendId);
         network.changed();
     }
 
@@ -269,7 +495,9 @@ abstract public class Terminal implements Serializable, Visitable {
         if (!this.isFriend(terminalFriend)) {
             throw new InvalidFriendException();
         }
-        _terminalFriends.remove(terminalFriendId);
+        _friends.remove(terminalFriend.getNumber());
+        network.getJournal().recordFriendRemoval(getTerminalId(),
+            terminalFriendId);
         network.changed();
     }
 
@@ -277,6 +505,45 @@ abstract public class Terminal implements Serializable, Visitable {
         return _status.getStatusType();
     }
 
+    /**
+     * Gets the type of the status the terminal returns to once it stops being
+     * busy, which is the current status type if the terminal isn't busy.
+     *
+     * @return The type of the status the terminal rests on
+     */
+    public String getRestingStatusType() {
+        return _status.getRestingStatus().getStatusType();
+    }
+
+    /**
+     * Restores the status of the terminal as it was when it was saved.
+     *
+     * @param statusType        The type of the status of the terminal
+     * @param restingStatusType The type of the status the terminal returns to
+     *                          once it stops being busy
+     * @throws IllegalTerminalStatusException if any status type is unknown
+     */
+    public void restoreStatus(String statusType, String restingStatusType)
+      throws IllegalTerminalStatusException {
+        _status = createStatus(restingStatusType);
+        if (!statusType.equals(restingStatusType)) {
+            if (!statusType.equals("BUSY")) {
+                throw new IllegalTerminalStatusException(statusType);
+            }
+            _status = new TerminalBusyStatus(this, _status);
+        }
+    }
+
+    private Status createStatus(String statusType)
+      throws IllegalTerminalStatusException {
+        return switch (statusType) {
+            case "IDLE" -> new TerminalIdleStatus(this);
+            case "SILENCE" -> new TerminalSilentStatus(this);
+            case "OFF" -> new TerminalOffStatus(this);
+            default -> throw new IllegalTerminalStatusException(statusType);
+        };
+    }
+
     public void setStatus(String status) throws IllegalTerminalStatusException {
         _status.setStatus(status);
     }
@@ -284,18 +551,21 @@ abstract public class Terminal implements Serializable, Visitable {
     public void setOnIdle(Network network)
       throws IllegalTerminalStatusException, UnreachableBusyTerminalException {
         _status.setOnIdle();
+        network.getJournal().recordStatusChange(getTerminalId(), "IDLE");
         network.changed();
     }
 
     public void setOnSilent(Network network)
       throws IllegalTerminalStatusException, UnreachableBusyTerminalException {
         _status.setOnSilent();
+        network.getJournal().recordStatusChange(getTerminalId(), "SILENCE");
         network.changed();
     }
 
     public void turnOff(Network network)
       throws IllegalTerminalStatusException, UnreachableBusyTerminalException {
         _status.turnOff();
+        network.getJournal().recordStatusChange(getTerminalId(), "OFF");
         network.changed();
     }
 
@@ -311,11 +581,52 @@ abstract public class Terminal implements Serializable, Visitable {
     public boolean equals(Object o) {
         if (o instanceof Terminal) {
             Terminal terminal = (Terminal) o;
-            return getTerminalId().compareTo(terminal.getTerminalId()) == 0;
+            return _number == terminal._number;
         }
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return _number;
+    }
+
+    /**
+     * Restores a terminal from a serialized stream, working out the number of
+     * its key again. The friends of terminals serialized by earlier versions
+     * are read by their keys, since the friends themselves may not be fully
+     * read yet, their communications are left to the network and their
+     * payments and debts are converted into cents.
+     *
+     * @param in The stream to read the terminal from
+     * @throws IOException            if there is an error reading the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *                                cannot be found
+     */
+    @Serial
+    private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        _number = TerminalKeys.toNumber(_id);
+        if (_friends == null) {
+            _friends = new FriendSet();
+            for (String friendId : _terminalFriends.keySet()) {
+                _friends.add(TerminalKeys.toNumber(friendId));
+            }
+            _terminalFriends = null;
+        }
+        if (_communications != null) {
+            _isUsed = !_communications.isEmpty();
+            _communications = null;
+        }
+        if (_payments != 0D || _debts != 0D) {
+            _paymentCents = Money.fromUnits(_payments);
+            _debtCents = Money.fromUnits(_debts);
+            _payments = 0D;
+            _debts = 0D;
+        }
+    }
+
     public String accept(Visitor visitor) {
         return visitor.visit(this);
     }
@@ -346,14 +657,17 @@ abstract public class Terminal implements Serializable, Visitable {
 
         protected abstract String getStatusType();
 
+        protected Status getRestingStatus() {
+            return this;
+        }
+
         protected abstract boolean canStartCommunication();
 
-        protected abstract void assertTextCommunicationReception(
-          Client clientToNotify) throws UnreachableOffTerminalException;
+        protected abstract CommunicationOutcome
+          checkTextCommunicationReception(Client clientToNotify);
 
-        protected abstract void assertInteractiveCommunicationReception(
-          Client clientToNotify) throws UnreachableOffTerminalException,
-          UnreachableBusyTerminalException, UnreachableSilentTerminalException;
+        protected abstract CommunicationOutcome
+          checkInteractiveCommunicationReception(Client clientToNotify);
 
         protected abstract void setOnIdle()
           throws IllegalTerminalStatusException,
@@ -3,6 +3,7 @@ package prr.terminals;
 import java.io.Serial;
 
 import prr.clients.Client;
+import prr.communications.CommunicationOutcome;
 import prr.exceptions.UnreachableBusyTerminalException;
 
 public class TerminalBusyStatus extends Terminal.Status {
@@ -24,21 +25,27 @@ public class TerminalBusyStatus extends Terminal.Status {
         return "BUSY";
     }
 
+    @Override
+    protected Terminal.Status getRestingStatus() {
+        return _previousStatus;
+    }
+
     @Override
     protected boolean canStartCommunication() {
         return false;
     }
 
     @Override
-    protected void assertTextCommunicationReception(Client clientToNotify) {
-        // do nothing
+    protected CommunicationOutcome checkTextCommunicationReception(
+      Client clientToNotify) {
+        return CommunicationOutcome.MADE;
     }
 
     @Override
-    protected void assertInteractiveCommunicationReception(
-      Client clientToNotify) throws UnreachableBusyTerminalException {
+    protected CommunicationOutcome checkInteractiveCommunicationReception(
+      Client clientToNotify) {
         getTerminal().addToNotify(clientToNotify);
-        throw new UnreachableBusyTerminalException();
+        return CommunicationOutcome.DESTINATION_BUSY;
     }
 
     @Override
@@ -3,6 +3,7 @@ package prr.terminals;
 import java.io.Serial;
 
 import prr.clients.Client;
+import prr.communications.CommunicationOutcome;
 import prr.notifications.BusyToIdleNotification;
 import prr.exceptions.IllegalTerminalStatusException;
 
@@ -27,14 +28,15 @@ public class TerminalIdleStatus extends Terminal.Status {
     }
 
     @Override
-    protected void assertTextCommunicationReception(Client clientToNotify) {
-        // do nothing
+    protected CommunicationOutcome checkTextCommunicationReception(
+      Client clientToNotify) {
+        return CommunicationOutcome.MADE;
     }
 
     @Override
-    protected void assertInteractiveCommunicationReception(
+    protected CommunicationOutcome checkInteractiveCommunicationReception(
       Client clientToNotify) {
-        // do nothing
+        return CommunicationOutcome.MADE;
     }
 
     @Override
@@ -0,0 +1,53 @@
+package prr.terminals;
+
+/**
+ * Terminal keys, which are always made up of exactly six digits. Since their
+ * digits are fixed, a key can be stored as the number it spells, and keys
+ * sort the same way as their numbers.
+ */
+public final class TerminalKeys {
+
+    /** Number of digits of a terminal key. */
+    public static final int LENGTH = 6;
+
+    /** Number of distinct terminal keys, from 000000 to 999999. */
+    public static final int CAPACITY = 1_000_000;
+
+    private TerminalKeys() {
+        // static methods only
+    }
+
+    /**
+     * Converts a terminal key to the number it spells.
+     *
+     * @param id The terminal key
+     * @return The number of the key, or -1 if it isn't a valid terminal key
+     */
+    public static int toNumber(String id) {
+        if (id.length() != LENGTH) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Appends the terminal key that spells a number, with its leading zeros.
+     *
+     * @param keys   Where to append the key
+     * @param number The number of the key
+     */
+    public static void appendKey(StringBuilder keys, int number) {
+        for (int divisor = CAPACITY / 10; divisor > 0; divisor /= 10) {
+            keys.append((char) ('0' + number / divisor % 10));
+        }
+    }
+
+}
@@ -3,10 +3,10 @@ package prr.terminals;
 import java.io.Serial;
 
 import prr.clients.Client;
+import prr.communications.CommunicationOutcome;
 import prr.notifications.OffToIdleNotification;
 import prr.notifications.OffToSilentNotification;
 import prr.exceptions.IllegalTerminalStatusException;
-import prr.exceptions.UnreachableOffTerminalException;
 
 public class TerminalOffStatus extends Terminal.Status {
 
@@ -29,17 +29,17 @@ public class TerminalOffStatus extends Terminal.Status {
     }
 
     @Override
-    protected void assertTextCommunicationReception(Client clientToNotify)
-      throws UnreachableOffTerminalException {
+    protected CommunicationOutcome checkTextCommunicationReception(
+      Client clientToNotify) {
         getTerminal().addToNotify(clientToNotify);
-        throw new UnreachableOffTerminalException();
+        return CommunicationOutcome.DESTINATION_OFF;
     }
 
     @Override
-    protected void assertInteractiveCommunicationReception(
-      Client clientToNotify) throws UnreachableOffTerminalException {
+    protected CommunicationOutcome checkInteractiveCommunicationReception(
+      Client clientToNotify) {
         getTerminal().addToNotify(clientToNotify);
-        throw new UnreachableOffTerminalException();
+        return CommunicationOutcome.DESTINATION_OFF;
     }
 
     @Override
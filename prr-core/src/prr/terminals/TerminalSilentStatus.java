@@ -3,9 +3,9 @@ package prr.terminals;
 import java.io.Serial;
 
 import prr.clients.Client;
+import prr.communications.CommunicationOutcome;
 import prr.notifications.SilentToIdleNotification;
 import prr.exceptions.IllegalTerminalStatusException;
-import prr.exceptions.UnreachableSilentTerminalException;
 
 public class TerminalSilentStatus extends Terminal.Status {
 
@@ -28,15 +28,16 @@ public class TerminalSilentStatus extends Terminal.Status {
     }
 
     @Override
-    protected void assertTextCommunicationReception(Client clientToNotify) {
-        // do nothing
+    protected CommunicationOutcome checkTextCommunicationReception(
+      Client clientToNotify) {
+        return CommunicationOutcome.MADE;
     }
 
     @Override
-    protected void assertInteractiveCommunicationReception(
-      Client clientToNotify) throws UnreachableSilentTerminalException {
+    protected CommunicationOutcome checkInteractiveCommunicationReception(
+      Client clientToNotify) {
         getTerminal().addToNotify(clientToNotify);
-        throw new UnreachableSilentTerminalException();
+        return CommunicationOutcome.DESTINATION_SILENT;
     }
 
     @Override
@@ -0,0 +1,21 @@
+package prr.util;
+
+import prr.clients.Client;
+
+/**
+ * Observer of the changes made to the balance of the clients.
+ */
+public interface BalanceObserver {
+
+    /**
+     * Called after the balance of a client was updated.
+     *
+     * @param client        The client whose balance changed
+     * @param paymentsDelta The amount added to the client's payments, in
+     *                      cents
+     * @param debtsDelta    The amount added to the client's debts, in cents,
+     *                      which is negative when debts were paid
+     */
+    void balanceUpdated(Client client, long paymentsDelta, long debtsDelta);
+
+}
@@ -0,0 +1,65 @@
+package prr.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces files so that a crash leaves either the old or the new file in
+ * place, never a partially written one.
+ */
+public class DurableFiles {
+
+    private DurableFiles() {
+        // static methods only
+    }
+
+    /**
+     * Forces the contents of a file to the storage device.
+     *
+     * @param file The file to force
+     * @throws IOException if there is an error forcing the file
+     */
+    public static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+          StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Atomically replaces a file with another one, which must already be
+     * forced to the storage device, and then forces the directory entry of the
+     * replaced file.
+     *
+     * @param source The file with the new contents
+     * @param target The file to replace
+     * @throws IOException if there is an error replacing the file
+     */
+    public static void replace(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(target);
+    }
+
+    /**
+     * Forces the directory that contains a file to the storage device, so
+     * that renaming the file survives a crash. Not every platform can open a
+     * directory, in which case the directory is left as it is.
+     *
+     * @param file The file whose directory to force
+     */
+    private static void forceDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory,
+          StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the rename itself is still atomic
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package prr.util;
+
+/**
+ * Splits entries of plain text files into their fields without using regular
+ * expressions. The same tokenizer can be reused for every entry, so that only
+ * the strings of the fields themselves are allocated.
+ * <p>
+ * Fields are split exactly like {@code String.split} does for a single
+ * separator character: an entry without separators has a single field and
+ * trailing empty fields are discarded.
+ */
+public class EntryTokenizer {
+
+    /** Initial capacity of the fields array. */
+    private static final int INITIAL_CAPACITY = 8;
+
+    private String[] _fields;
+    private int _size;
+
+    public EntryTokenizer() {
+        _fields = new String[INITIAL_CAPACITY];
+        _size = 0;
+    }
+
+    /**
+     * Splits an entry into its fields, replacing the fields of the previous
+     * entry.
+     *
+     * @param entry     The entry to split
+     * @param separator The character that separates the fields
+     * @return The number of fields of the entry
+     */
+    public int tokenize(String entry, char separator) {
+        _size = 0;
+        int start = 0;
+        int index;
+        while ((index = entry.indexOf(separator, start)) >= 0) {
+            add(entry.substring(start, index));
+            start = index + 1;
+        }
+        if (start == 0) {
+            add(entry);
+            return _size;
+        }
+        add(entry.substring(start));
+        while (_size > 0 && _fields[_size - 1].isEmpty()) {
+            _fields[--_size] = null;
+        }
+        return _size;
+    }
+
+    private void add(String field) {
+        if (_size == _fields.length) {
+            String[] fields = new String[_size * 2];
+            System.arraycopy(_fields, 0, fields, 0, _size);
+            _fields = fields;
+        }
+        _fields[_size++] = field;
+    }
+
+    /** @return The number of fields of the last entry */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * @param index The position of the field
+     * @return The field at the given position of the last entry
+     */
+    public String get(int index) {
+        if (index >= _size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return _fields[index];
+    }
+
+}
@@ -0,0 +1,59 @@
+package prr.util;
+
+/**
+ * Amounts of money, which are kept as a {@code long} count of cents. Adding
+ * and subtracting amounts is then exact, so running totals never drift from
+ * the sum of what they add up, in whatever order it is added.
+ */
+public final class Money {
+
+    /** Number of cents of a unit of money. */
+    public static final long UNIT = 100;
+
+    private Money() {
+        // static methods only
+    }
+
+    /**
+     * Gets the amount of a whole number of units of money.
+     *
+     * @param units The number of units
+     * @return The amount, in cents
+     */
+    public static long of(long units) {
+        return units * UNIT;
+    }
+
+    /**
+     * Converts an amount kept as a fractional number of units, as done by
+     * earlier versions, rounding it to the nearest cent.
+     *
+     * @param units The amount, in units
+     * @return The amount, in cents
+     */
+    public static long fromUnits(double units) {
+        return Math.round(units * UNIT);
+    }
+
+    /**
+     * Converts an amount into a fractional number of units.
+     *
+     * @param amount The amount, in cents
+     * @return The amount, in units
+     */
+    public static double toUnits(long amount) {
+        return (double) amount / UNIT;
+    }
+
+    /**
+     * Rounds an amount to the nearest whole unit, rounding halves up, the
+     * same way {@link Math#round(double)} rounds the amount in units.
+     *
+     * @param amount The amount, in cents
+     * @return The amount, in whole units
+     */
+    public static long round(long amount) {
+        return Math.floorDiv(amount + UNIT / 2, UNIT);
+    }
+
+}
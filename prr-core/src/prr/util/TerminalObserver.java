@@ -0,0 +1,24 @@
+package prr.util;
+
+import prr.terminals.Terminal;
+
+/**
+ * Observer of the changes made to the use and the balance of the terminals.
+ */
+public interface TerminalObserver {
+
+    /**
+     * Called the first time a terminal takes part in a communication.
+     *
+     * @param terminal The terminal that was used
+     */
+    void terminalUsed(Terminal terminal);
+
+    /**
+     * Called after the balance of a terminal was updated.
+     *
+     * @param terminal The terminal whose balance changed
+     */
+    void terminalBalanceUpdated(Terminal terminal);
+
+}
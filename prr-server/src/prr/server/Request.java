@@ -0,0 +1,55 @@
+package prr.server;
+
+/**
+ * Requests understood by a session. A request is a line with its name and
+ * its arguments separated by '|', such as {@code SEND_SMS|100001|100002|Hi};
+ * the last argument takes the rest of the line, separators included.
+ */
+enum Request {
+
+    REGISTER_CLIENT(3, false),
+    REGISTER_TERMINAL(3, false),
+    ENABLE_CLIENT_NOTIFICATIONS(1, false),
+    DISABLE_CLIENT_NOTIFICATIONS(1, false),
+    SEND_SMS(3, true),
+    START_CALL(3, true),
+    END_CALL(2, true),
+    PAY(2, false),
+    SHOW_CLIENT(1, false),
+    SHOW_TERMINAL(1, false),
+    SHOW_ALL_CLIENTS(0, false),
+    SHOW_ALL_TERMINALS(0, false),
+    SHOW_UNUSED_TERMINALS(0, false),
+    SHOW_TERMINALS_WITH_POSITIVE_BALANCE(0, false),
+    SHOW_ALL_COMMUNICATIONS(0, false),
+    LIST_CLIENTS(2, false),
+    LIST_TERMINALS(2, false),
+    LIST_COMMUNICATIONS(2, false),
+    SHOW_COMMUNICATIONS_FROM_CLIENT(1, false),
+    SHOW_COMMUNICATIONS_TO_CLIENT(1, false),
+    SHOW_CLIENTS_WITH_DEBTS(0, false),
+    SHOW_CLIENTS_WITHOUT_DEBTS(0, false),
+    SHOW_GLOBAL_BALANCE(0, false),
+    SAVE(0, false),
+    QUIT(0, false);
+
+    /** Number of arguments of the request. */
+    private final int _arguments;
+
+    /** Can the request run at the same time as other shared requests? */
+    private final boolean _shared;
+
+    Request(int arguments, boolean shared) {
+        _arguments = arguments;
+        _shared = shared;
+    }
+
+    int getArguments() {
+        return _arguments;
+    }
+
+    boolean isShared() {
+        return _shared;
+    }
+
+}
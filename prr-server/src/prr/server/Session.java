@@ -0,0 +1,318 @@
+package prr.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import prr.Network;
+import prr.NetworkManager;
+import prr.Page;
+import prr.app.util.ToStringer;
+import prr.exceptions.DuplicateClientKeyException;
+import prr.exceptions.DuplicateTerminalKeyException;
+import prr.exceptions.InvalidCommunicationException;
+import prr.exceptions.InvalidTerminalKeyException;
+import prr.exceptions.MissingFileAssociationException;
+import prr.exceptions.NotificationsAlreadyToggledException;
+import prr.exceptions.UnknownClientKeyException;
+import prr.exceptions.UnknownEntryTypeException;
+import prr.exceptions.UnknownTerminalKeyException;
+import prr.exceptions.UnreachableBusyTerminalException;
+import prr.exceptions.UnreachableOffTerminalException;
+import prr.exceptions.UnreachableSilentTerminalException;
+import prr.exceptions.UnsupportedCommunicationAtDestinationException;
+import prr.exceptions.UnsupportedCommunicationAtOriginException;
+import prr.util.Money;
+import prr.util.Visitable;
+
+/**
+ * A session of the server. Reads one request per line and answers it with
+ * the lines of its result, formatted as in the application, followed by a
+ * line with {@code OK}, or with a single {@code ERROR|<reason>|<details>}
+ * line if the request failed.
+ * <p>
+ * Like the commands of the application, a session only reads the arguments
+ * of a request, performs it on the network and formats its result with the
+ * application's {@link ToStringer}; the commands themselves can't be shared,
+ * as they read their arguments from forms and write to the display.
+ */
+class Session implements Runnable {
+
+    /** The socket of the session. */
+    private final Socket _socket;
+
+    /** The manager of the shared network. */
+    private final NetworkManager _manager;
+
+    /** Shared by communications, exclusive for every other request. */
+    private final ReadWriteLock _lock;
+
+    /** Formats the entities of the network. */
+    private final ToStringer _toStringer;
+
+    /**
+     * @param socket  The socket of the session
+     * @param manager The manager of the shared network
+     * @param lock    Shared by communications, exclusive for every other
+     *                request
+     */
+    Session(Socket socket, NetworkManager manager, ReadWriteLock lock) {
+        _socket = socket;
+        _manager = manager;
+        _lock = lock;
+        _toStringer = new ToStringer();
+    }
+
+    @Override
+    public void run() {
+        try (Socket socket = _socket;
+          BufferedReader in = new BufferedReader(new InputStreamReader(
+            socket.getInputStream(), StandardCharsets.UTF_8));
+          BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+            socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                List<String> response = new ArrayList<>();
+                boolean open = answer(line, response);
+                for (String responseLine : response) {
+                    out.write(responseLine);
+                    out.newLine();
+                }
+                out.flush();
+                if (!open) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // the client went away
+        }
+    }
+
+    /**
+     * Answers a request.
+     *
+     * @param line     The request
+     * @param response The lines of the response
+     * @return false if the session must be closed, true otherwise
+     */
+    private boolean answer(String line, List<String> response) {
+        int separator = line.indexOf('|');
+        String name = separator < 0 ? line : line.substring(0, separator);
+        Request request;
+        try {
+            request = Request.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            response.add("ERROR|UNKNOWN_REQUEST|" + name);
+            return true;
+        }
+        String[] arguments = split(line, separator, request.getArguments());
+        if (arguments == null) {
+            response.add("ERROR|BAD_REQUEST|" + line);
+            return true;
+        }
+
+        Lock lock = request.isShared() ? _lock.readLock() : _lock.writeLock();
+        lock.lock();
+        try {
+            perform(request, arguments, response);
+            response.add("OK");
+        } catch (IllegalArgumentException e) {
+            response.add("ERROR|BAD_REQUEST|" + line);
+        } catch (UnknownClientKeyException e) {
+            response.add("ERROR|UNKNOWN_CLIENT|" + e.getKey());
+        } catch (UnknownTerminalKeyException e) {
+            response.add("ERROR|UNKNOWN_TERMINAL|" + e.getKey());
+        } catch (DuplicateClientKeyException e) {
+            response.add("ERROR|DUPLICATE_CLIENT|" + e.getKey());
+        } catch (DuplicateTerminalKeyException e) {
+            response.add("ERROR|DUPLICATE_TERMINAL|" + e.getKey());
+        } catch (InvalidTerminalKeyException e) {
+            response.add("ERROR|INVALID_TERMINAL_KEY|" + e.getKey());
+        } catch (UnknownEntryTypeException e) {
+            response.add("ERROR|UNKNOWN_TERMINAL_TYPE|" + arguments[0]);
+        } catch (NotificationsAlreadyToggledException e) {
+            response.add("ERROR|NOTIFICATIONS_ALREADY_TOGGLED|" +
+                arguments[0]);
+        } catch (UnreachableOffTerminalException e) {
+            response.add("ERROR|DESTINATION_IS_OFF|" + arguments[1]);
+        } catch (UnreachableBusyTerminalException e) {
+            response.add("ERROR|DESTINATION_IS_BUSY|" + arguments[1]);
+        } catch (UnreachableSilentTerminalException e) {
+            response.add("ERROR|DESTINATION_IS_SILENT|" + arguments[1]);
+        } catch (UnsupportedCommunicationAtOriginException e) {
+            response.add("ERROR|UNSUPPORTED_AT_ORIGIN|" + arguments[0]);
+        } catch (UnsupportedCommunicationAtDestinationException e) {
+            response.add("ERROR|UNSUPPORTED_AT_DESTINATION|" + arguments[1]);
+        } catch (InvalidCommunicationException e) {
+            response.add("ERROR|INVALID_COMMUNICATION|" + line);
+        } catch (MissingFileAssociationException e) {
+            response.add("ERROR|NO_FILE|");
+        } catch (IOException e) {
+            response.add("ERROR|SAVE_FAILED|" + e.getMessage());
+        } catch (RuntimeException e) {
+            // a failure of one request must not take the session down
+            response.add("ERROR|INTERNAL|" + e);
+        } finally {
+            lock.unlock();
+        }
+        return request != Request.QUIT;
+    }
+
+    /**
+     * Performs a request on the shared network.
+     *
+     * @param request   The request
+     * @param arguments The arguments of the request
+     * @param response  The lines of the result of the request
+     */
+    private void perform(Request request, String[] arguments,
+      List<String> response) throws UnknownClientKeyException,
+      UnknownTerminalKeyException, DuplicateClientKeyException,
+      DuplicateTerminalKeyException, InvalidTerminalKeyException,
+      UnknownEntryTypeException, NotificationsAlreadyToggledException,
+      UnreachableOffTerminalException, UnreachableBusyTerminalException,
+      UnreachableSilentTerminalException,
+      UnsupportedCommunicationAtOriginException,
+      UnsupportedCommunicationAtDestinationException,
+      InvalidCommunicationException, MissingFileAssociationException,
+      IOException {
+        Network network = _manager.getNetwork();
+        switch (request) {
+            case REGISTER_CLIENT -> network.registerClient(arguments[0],
+                arguments[1], Integer.parseInt(arguments[2]));
+            case REGISTER_TERMINAL -> network.registerTerminal(arguments[0],
+                arguments[1], arguments[2]);
+            case ENABLE_CLIENT_NOTIFICATIONS ->
+                network.enableClientNotifications(arguments[0]);
+            case DISABLE_CLIENT_NOTIFICATIONS ->
+                network.disableClientNotifications(arguments[0]);
+            case SEND_SMS ->
+                network.sendSMS(arguments[0], arguments[1], arguments[2]);
+            case START_CALL -> {
+                switch (arguments[2]) {
+                    case "VOICE" ->
+                        network.makeVoiceCall(arguments[0], arguments[1]);
+                    case "VIDEO" ->
+                        network.makeVideoCall(arguments[0], arguments[1]);
+                    default ->
+                        throw new IllegalArgumentException(arguments[2]);
+                }
+            }
+            case END_CALL -> response.add(Long.toString(Money.round(
+                network.endOngoingCommunication(arguments[0],
+                    Integer.parseInt(arguments[1])))));
+            case PAY -> network.getTerminal(arguments[0]).performPayment(
+                Integer.parseInt(arguments[1]), network);
+            case SHOW_CLIENT -> {
+                response.add(network.getClient(arguments[0])
+                    .accept(_toStringer));
+                format(network.getClientNotifications(arguments[0]),
+                    response);
+            }
+            case SHOW_TERMINAL -> response.add(
+                network.getTerminal(arguments[0]).accept(_toStringer));
+            case SHOW_ALL_CLIENTS -> format(network.getAllClients(), response);
+            case SHOW_ALL_TERMINALS ->
+                format(network.getAllTerminals(), response);
+            case SHOW_UNUSED_TERMINALS ->
+                format(network.getUnusedTerminals(), response);
+            case SHOW_TERMINALS_WITH_POSITIVE_BALANCE ->
+                format(network.getTerminalsWithPositiveBalance(), response);
+            case SHOW_ALL_COMMUNICATIONS ->
+                format(network.getAllCommunications(), response);
+            case LIST_CLIENTS -> format(network.getClientsPage(
+                cursor(arguments[1]), Integer.parseInt(arguments[0])),
+                response);
+            case LIST_TERMINALS -> format(network.getTerminalsPage(
+                cursor(arguments[1]), Integer.parseInt(arguments[0])),
+                response);
+            case LIST_COMMUNICATIONS -> format(network.getCommunicationsPage(
+                cursor(arguments[1]), Integer.parseInt(arguments[0])),
+                response);
+            case SHOW_COMMUNICATIONS_FROM_CLIENT -> format(
+                network.getCommunicationsMadeByClient(arguments[0]), response);
+            case SHOW_COMMUNICATIONS_TO_CLIENT -> format(
+                network.getCommunicationsReceivedByClient(arguments[0]),
+                response);
+            case SHOW_CLIENTS_WITH_DEBTS ->
+                format(network.getClientsWithDebts(), response);
+            case SHOW_CLIENTS_WITHOUT_DEBTS ->
+                format(network.getClientsWithoutDebts(), response);
+            case SHOW_GLOBAL_BALANCE -> response.add(
+                Money.round(network.getGlobalPayments()) + "|" +
+                Money.round(network.getGlobalDebts()));
+            case SAVE -> _manager.save();
+            case QUIT -> {
+                // the session is closed once answered
+            }
+        }
+    }
+
+    private void format(Collection<? extends Visitable> entities,
+      List<String> response) {
+        for (Visitable entity : entities) {
+            response.add(entity.accept(_toStringer));
+        }
+    }
+
+    /**
+     * Formats a page of a listing, followed by a line with the cursor of the
+     * next page, {@code NEXT|<cursor>}, unless it is the last.
+     *
+     * @param page     The page
+     * @param response The lines of the result of the request
+     */
+    private void format(Page<? extends Visitable> page,
+      List<String> response) {
+        format(page.getItems(), response);
+        if (page.hasNext()) {
+            response.add("NEXT|" + page.getNext());
+        }
+    }
+
+    /**
+     * @param argument The cursor argument of a listing request
+     * @return The cursor, or null to start with the first item
+     */
+    private static String cursor(String argument) {
+        return argument.isEmpty() ? null : argument;
+    }
+
+    /**
+     * Splits the arguments of a request. The last argument takes the rest of
+     * the line.
+     *
+     * @param line      The request
+     * @param separator Where the name of the request ends, or -1 if the
+     *                  request has no arguments
+     * @param arguments The number of arguments of the request
+     * @return The arguments, or null if there are too few or too many
+     */
+    private static String[] split(String line, int separator, int arguments) {
+        if (arguments == 0 || separator < 0) {
+            return arguments == 0 && separator < 0 ? new String[0] : null;
+        }
+        String[] fields = new String[arguments];
+        int start = separator + 1;
+        for (int i = 0; i < arguments - 1; i++) {
+            int end = line.indexOf('|', start);
+            if (end < 0) {
+                return null;
+            }
+            fields[i] = line.substring(start, end);
+            start = end + 1;
+        }
+        fields[arguments - 1] = line.substring(start);
+        return fields;
+    }
+
+}
@@ -0,0 +1,84 @@
+package prr.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import prr.ImportMode;
+import prr.MessageStorage;
+import prr.NetworkManager;
+import prr.exceptions.ImportFileException;
+import prr.exceptions.UnavailableFileException;
+
+/**
+ * Server entry-point. Accepts sessions on a local socket and runs each one on
+ * a thread of its own, all of them sharing the same network.
+ * <p>
+ * Communications are made and ended by many sessions at once, through the
+ * operations of the network that lock their terminals, so they share a read
+ * lock. Every other request, such as registering entities, paying or looking
+ * the network up, takes the write lock and runs alone.
+ */
+public class SessionServer {
+
+    /** Default port of the server. */
+    private static final int DEFAULT_PORT = 7070;
+
+    /** The manager of the shared network. */
+    private final NetworkManager _manager;
+
+    /** Shared by communications, exclusive for every other request. */
+    private final ReadWriteLock _lock;
+
+    /**
+     * @param manager The manager of the shared network
+     */
+    public SessionServer(NetworkManager manager) {
+        _manager = manager;
+        _lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Accepts sessions on a port of the loopback interface until the server
+     * socket fails.
+     *
+     * @param port The port to listen on
+     * @throws IOException if the server socket cannot be opened
+     */
+    public void serve(int port) throws IOException {
+        ExecutorService sessions = SessionThreads.newExecutor();
+        try (ServerSocket serverSocket = new ServerSocket(port, 0,
+          InetAddress.getLoopbackAddress())) {
+            System.out.println("listening on " +
+                serverSocket.getLocalSocketAddress());
+            while (true) {
+                Socket socket = serverSocket.accept();
+                sessions.execute(new Session(socket, _manager, _lock));
+            }
+        } finally {
+            sessions.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws IOException,
+      UnavailableFileException, ImportFileException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        NetworkManager manager = new NetworkManager();
+        manager.setMessageStorage(MessageStorage.valueOf(
+            System.getProperty("messageStorage", "heap").toUpperCase()));
+        if (args.length > 1) {
+            manager.load(args[1]);
+        }
+        String datafile = System.getProperty("import");
+        if (datafile != null) {
+            manager.importFile(datafile, ImportMode.valueOf(
+                System.getProperty("importMode", "sequential").toUpperCase()));
+        }
+        new SessionServer(manager).serve(port);
+    }
+
+}
@@ -0,0 +1,53 @@
+package prr.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads that run the sessions of the server: one virtual
+ * thread per session on runtimes that have them, or one daemon platform
+ * thread per session otherwise.
+ */
+class SessionThreads {
+
+    private SessionThreads() {
+        // static methods only
+    }
+
+    /**
+     * Creates an executor that starts a new thread for every session.
+     * Virtual threads are looked up reflectively, so that the server still
+     * builds and runs on runtimes that don't have them.
+     *
+     * @return The executor of the sessions
+     */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(new PlatformThreads());
+        }
+    }
+
+    /**
+     * Creates daemon platform threads named after the sessions they run.
+     */
+    private static class PlatformThreads implements ThreadFactory {
+
+        /** Number of the next thread. */
+        private final AtomicInteger _next = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread =
+                new Thread(runnable, "session-" + _next.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}